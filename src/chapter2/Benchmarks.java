@@ -0,0 +1,24 @@
+package chapter2;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 各条目基准测试共用的小工具
+ *
+ * @author CN-JeffreyZhou
+ */
+public final class Benchmarks {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Benchmarks() {
+    }
+
+    /**
+     * 当前线程累计分配的字节数（HotSpot 扩展），前后两次调用相减即为期间的分配量
+     */
+    public static long allocatedBytes() {
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,228 @@
+package chapter2.item1;
+
+import chapter2.item1.Item1_Advantage1_NamedMethod.Animal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static chapter2.Benchmarks.allocatedBytes;
+
+/**
+ * 演示 Effective Java 第1条：用静态工厂方法代替构造器
+ *
+ * 优势1 进阶：列式存储（数组结构，struct-of-arrays）的动物表
+ *
+ * Item1_Advantage1_NamedMethod.Animal 只有三个字段，却要付出对象头、
+ * 对齐填充和集合中的引用。几千万个这样的对象时，开销比数据本身还大，
+ * 遍历时还要在堆上到处跳。改进：
+ * 1. 每个字段一列：物种编号 short[]、体重 double[]、年龄 int[]
+ * 2. 物种名存一次字典，每行只存编号
+ * 3. 保留有名称的工厂方法 fromWeightAndAge / newborn / adult，改为"追加一行"，返回行号
+ * 4. 统计是对原始数组的顺序扫描，没有指针追逐，JIT 可以展开并向量化
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item1_Advantage1_AnimalTable {
+
+    static final class AnimalTable {
+        // 物种字典：编号 -> 名称，名称 -> 编号
+        private final List<String> speciesNames = new ArrayList<>();
+        private final Map<String, Short> speciesIds = new HashMap<>();
+
+        private short[] species;
+        private double[] weights;
+        private int[] ages;
+        private int size;
+
+        AnimalTable(int initialCapacity) {
+            species = new short[initialCapacity];
+            weights = new double[initialCapacity];
+            ages = new int[initialCapacity];
+        }
+
+        // ==================== 有名称的追加方法 ====================
+
+        // 从体重和年龄追加
+        int fromWeightAndAge(String species, double weight, int age) {
+            return append(idOf(species), weight, age);
+        }
+
+        // 追加幼年动物（年龄为0）
+        int newborn(String species, double weight) {
+            return append(idOf(species), weight, 0);
+        }
+
+        // 追加成年动物（使用标准体重，与 Animal.adult() 一致）
+        int adult(String species) {
+            double standardWeight = species.equals("狗") ? 20.0 : 4.0;
+            return append(idOf(species), standardWeight, 5);
+        }
+
+        private short idOf(String name) {
+            Short id = speciesIds.get(name);
+            if (id == null) {
+                if (speciesNames.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("物种数量超过上限: " + Short.MAX_VALUE);
+                }
+                id = (short) speciesNames.size();
+                speciesNames.add(name);
+                speciesIds.put(name, id);
+            }
+            return id;
+        }
+
+        private int append(short speciesId, double weight, int age) {
+            if (size == weights.length) {
+                int capacity = Math.max(16, size + (size >> 1));   // 1.5 倍扩容
+                species = Arrays.copyOf(species, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+            }
+            species[size] = speciesId;
+            weights[size] = weight;
+            ages[size] = age;
+            return size++;
+        }
+
+        // ==================== 按行读取 ====================
+
+        int size() { return size; }
+
+        String species(int row) { return speciesNames.get(species[checkRow(row)]); }
+
+        double weight(int row) { return weights[checkRow(row)]; }
+
+        int age(int row) { return ages[checkRow(row)]; }
+
+        // 需要与旧代码交互时，按需物化成对象
+        Animal toAnimal(int row) {
+            return Animal.fromWeightAndAge(species(row), weights[row], ages[row]);
+        }
+
+        private int checkRow(int row) {
+            if (row < 0 || row >= size) throw new IndexOutOfBoundsException("行号越界: " + row);
+            return row;
+        }
+
+        // ==================== 列扫描 ====================
+
+        /**
+         * 平均体重（整列顺序扫描，简单的归约循环）
+         */
+        double averageWeight() {
+            double[] w = weights;
+            int n = size;
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += w[i];
+            }
+            return n == 0 ? Double.NaN : sum / n;
+        }
+
+        /**
+         * 按物种的平均体重：一次扫描，按编号累加到小数组里
+         */
+        Map<String, Double> averageWeightBySpecies() {
+            int k = speciesNames.size();
+            double[] sums = new double[k];
+            int[] counts = new int[k];
+            short[] s = species;
+            double[] w = weights;
+            int n = size;
+            for (int i = 0; i < n; i++) {
+                sums[s[i]] += w[i];
+                counts[s[i]]++;
+            }
+            Map<String, Double> result = new HashMap<>();
+            for (int id = 0; id < k; id++) {
+                if (counts[id] > 0) result.put(speciesNames.get(id), sums[id] / counts[id]);
+            }
+            return result;
+        }
+
+        /**
+         * 年龄大于等于 minAge 的数量：比较结果直接累加，循环体没有分支
+         */
+        int countAtLeast(int minAge) {
+            int[] a = ages;
+            int n = size;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                count += a[i] >= minAge ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    // 对象列表上的同一个统计，用于对比
+    static Map<String, Double> averageWeightBySpecies(List<Animal> animals) {
+        Map<String, double[]> acc = new HashMap<>();
+        for (Animal a : animals) {
+            double[] sc = acc.computeIfAbsent(a.species(), k -> new double[2]);
+            sc[0] += a.weight();
+            sc[1]++;
+        }
+        Map<String, Double> result = new HashMap<>();
+        acc.forEach((k, sc) -> result.put(k, sc[0] / sc[1]));
+        return result;
+    }
+
+    public static void main(String[] args) {
+        AnimalTable demo = new AnimalTable(4);
+        int dog1 = demo.fromWeightAndAge("狗", 25.0, 3);
+        int dog2 = demo.newborn("狗", 2.5);
+        int cat = demo.adult("猫");
+        System.out.println("同样有名称的工厂方法，返回的是行号：");
+        System.out.println("第" + dog1 + "行: " + demo.toAnimal(dog1));
+        System.out.println("第" + dog2 + "行: " + demo.toAnimal(dog2));
+        System.out.println("第" + cat + "行: " + demo.toAnimal(cat));
+
+        String[] kinds = {"狗", "猫", "兔", "鹦鹉"};
+        int n = 5_000_000;
+
+        Random random = new Random(11);
+        long before = allocatedBytes();
+        List<Animal> objects = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            objects.add(Animal.fromWeightAndAge(kinds[random.nextInt(kinds.length)],
+                    1 + random.nextDouble() * 30, random.nextInt(15)));
+        }
+        long objectBytes = allocatedBytes() - before;
+
+        random = new Random(11);
+        before = allocatedBytes();
+        AnimalTable table = new AnimalTable(n);
+        for (int i = 0; i < n; i++) {
+            table.fromWeightAndAge(kinds[random.nextInt(kinds.length)],
+                    1 + random.nextDouble() * 30, random.nextInt(15));
+        }
+        long tableBytes = allocatedBytes() - before;
+
+        System.out.printf("%n%,d 只动物的内存：%n", n);
+        System.out.printf("List<Animal>: %,d 字节（约 %.1f 字节/只）%n", objectBytes, objectBytes / (double) n);
+        System.out.printf("AnimalTable:  %,d 字节（约 %.1f 字节/只）%n", tableBytes, tableBytes / (double) n);
+
+        long objectTime = 0, tableTime = 0;
+        Map<String, Double> a = null, b = null;
+        for (int round = 0; round < 5; round++) {   // 前几轮用于预热
+            long start = System.nanoTime();
+            a = averageWeightBySpecies(objects);
+            objectTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            b = table.averageWeightBySpecies();
+            tableTime = System.nanoTime() - start;
+        }
+        System.out.println("\n按物种求平均体重：");
+        System.out.printf("List<Animal>: %d ms%n", objectTime / 1_000_000);
+        System.out.printf("AnimalTable:  %d ms%n", tableTime / 1_000_000);
+        System.out.println("结果一致: " + a.equals(b));
+        System.out.printf("平均体重 %.2fkg，5 岁及以上 %,d 只%n", table.averageWeight(), table.countAtLeast(5));
+
+        System.out.println("\n关键：工厂方法的名称保留下来，但数据按列存放，省掉对象头和指针");
+    }
+}
@@ -36,6 +36,12 @@ public class Item1_Advantage1_NamedMethod {
             return new Animal(species, standardWeight, 5);
         }
         
+        public String species() { return species; }
+        
+        public double weight() { return weight; }
+        
+        public int age() { return age; }
+        
         @Override
         public String toString() {
             return String.format("%s(体重:%.1fkg, 年龄:%d岁)", species, weight, age);
@@ -0,0 +1,336 @@
+package chapter2.item1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static chapter2.Benchmarks.allocatedBytes;
+
+/**
+ * 演示 Effective Java 第1条：用静态工厂方法代替构造器
+ *
+ * 优势2 进阶：基于最小完美哈希的享元注册表
+ *
+ * Item1_Advantage2_InstanceControl.AnimalType.valueOf() 用 switch 在三个硬编码实例中选择。
+ * 真实的类型目录在启动时加载几千项，并且每条消息都要查一次。改进：
+ * 1. 启动时为所有名称构建最小完美哈希（CHD：哈希-位移算法），n 个名称恰好占 n 个槽，
+ *    查找只需一次哈希、两次数组访问、一次比较，不分配对象
+ * 2. 可以直接用 byte[]（UTF-8）或 CharSequence 的片段查找，不必先创建 String
+ * 3. 运行时出现新类型时无锁驻留：构建包含新类型的新快照，CAS 发布
+ *
+ * 注意：每次驻留都会重建完美哈希（O(n)），适合新类型很少出现的场景。
+ * 类型名不能含孤立的代理字符：它们按 UTF-8 编码成 '?'，两个不同的名称会得到相同的字节和哈希。
+ * 无论哪种查找方式，同名类型始终返回同一个实例，可以用 == 比较。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item1_Advantage2_FlyweightRegistry {
+
+    /**
+     * 享元：不可变，同名只有一个实例
+     */
+    static final class AnimalType {
+        private final int id;
+        private final String name;
+        private final byte[] utf8;
+
+        private AnimalType(int id, String name) {
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (Character.isHighSurrogate(c) && i + 1 < name.length()
+                        && Character.isLowSurrogate(name.charAt(i + 1))) {
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    throw new IllegalArgumentException("类型名含有孤立的代理字符（下标 " + i + "）: " + name);
+                }
+            }
+            this.id = id;
+            this.name = name;
+            this.utf8 = name.getBytes(StandardCharsets.UTF_8);
+        }
+
+        int id() { return id; }
+
+        String name() { return name; }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * 一个不可变快照：类型数组 + 完美哈希表
+     */
+    private static final class Snapshot {
+        private static final int LAMBDA = 4;   // 每个桶平均放几个键
+
+        final AnimalType[] types;    // 按 id 排列
+        final int[] displacement;    // 每个桶的位移种子
+        final AnimalType[] slots;    // 槽 -> 类型
+
+        Snapshot(AnimalType[] types) {
+            this.types = types;
+            int n = types.length;
+            int buckets = Math.max(1, (n + LAMBDA - 1) / LAMBDA);
+            this.displacement = new int[buckets];
+            this.slots = new AnimalType[n];
+            if (n == 0) return;
+
+            // 1. 按一级哈希分桶。两个键哈希相同时任何位移都分不开它们，搜索前先拒绝
+            List<List<AnimalType>> byBucket = new ArrayList<>(buckets);
+            long[] hashes = new long[n];
+            Map<Long, AnimalType> seen = new HashMap<>(n * 2);
+            for (int b = 0; b < buckets; b++) byBucket.add(new ArrayList<>());
+            for (AnimalType t : types) {
+                hashes[t.id] = hash(t.utf8, 0, t.utf8.length);
+                AnimalType other = seen.putIfAbsent(hashes[t.id], t);
+                if (other != null) {
+                    throw new IllegalArgumentException("类型名的 64 位哈希冲突，无法构建完美哈希: "
+                            + other.name + " / " + t.name);
+                }
+                byBucket.get(bucketOf(hashes[t.id], buckets)).add(t);
+            }
+
+            // 2. 大桶优先，为每个桶寻找让所有键落在空槽里的位移
+            Integer[] order = new Integer[buckets];
+            for (int b = 0; b < buckets; b++) order[b] = b;
+            Arrays.sort(order, (a, b) -> byBucket.get(b).size() - byBucket.get(a).size());
+
+            int[] candidate = new int[LAMBDA * 8];
+            for (int b : order) {
+                List<AnimalType> keys = byBucket.get(b);
+                if (keys.isEmpty()) break;
+                if (candidate.length < keys.size()) candidate = new int[keys.size()];
+                int d = 0;
+                search:
+                while (true) {
+                    if (++d > 10_000_000) throw new IllegalStateException("无法构建完美哈希");
+                    for (int i = 0; i < keys.size(); i++) {
+                        int slot = slotOf(hashes[keys.get(i).id], d, n);
+                        if (slots[slot] != null) continue search;
+                        for (int j = 0; j < i; j++) {
+                            if (candidate[j] == slot) continue search;
+                        }
+                        candidate[i] = slot;
+                    }
+                    break;
+                }
+                displacement[b] = d;
+                for (int i = 0; i < keys.size(); i++) {
+                    slots[candidate[i]] = keys.get(i);
+                }
+            }
+        }
+
+        AnimalType find(long h) {
+            int n = slots.length;
+            if (n == 0) return null;
+            return slots[slotOf(h, displacement[bucketOf(h, displacement.length)], n)];
+        }
+
+        private static int bucketOf(long h, int buckets) {
+            return range((int) (h >>> 32), buckets);
+        }
+
+        private static int slotOf(long h, int d, int n) {
+            int x = (int) h + d * 0x9E3779B9;
+            x ^= x >>> 16;
+            x *= 0x85EBCA6B;
+            x ^= x >>> 13;
+            return range(x, n);
+        }
+
+        // 把 32 位哈希映射到 [0, n)，用乘法代替取模
+        private static int range(int h, int n) {
+            return (int) (((h & 0xFFFFFFFFL) * n) >>> 32);
+        }
+    }
+
+    // ==================== 哈希：UTF-8 字节上的 FNV-1a（64 位） ====================
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    static long hash(byte[] utf8, int off, int len) {
+        long h = FNV_OFFSET;
+        for (int i = off; i < off + len; i++) {
+            h = (h ^ (utf8[i] & 0xFF)) * FNV_PRIME;
+        }
+        return finish(h);
+    }
+
+    /**
+     * 直接对 CharSequence 片段按 UTF-8 编码求哈希，与 hash(byte[]) 结果一致
+     * 孤立的代理字符按 '?' 处理，与 String.getBytes(UTF_8) 一致
+     */
+    static long hash(CharSequence cs, int start, int end) {
+        long h = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            int c = cs.charAt(i);
+            if (c < 0x80) {
+                h = (h ^ c) * FNV_PRIME;
+            } else if (c < 0x800) {
+                h = (h ^ (0xC0 | c >> 6)) * FNV_PRIME;
+                h = (h ^ (0x80 | c & 0x3F)) * FNV_PRIME;
+            } else if (Character.isSurrogate((char) c)) {
+                if (Character.isHighSurrogate((char) c) && i + 1 < end
+                        && Character.isLowSurrogate(cs.charAt(i + 1))) {
+                    int cp = Character.toCodePoint((char) c, cs.charAt(++i));
+                    h = (h ^ (0xF0 | cp >> 18)) * FNV_PRIME;
+                    h = (h ^ (0x80 | cp >> 12 & 0x3F)) * FNV_PRIME;
+                    h = (h ^ (0x80 | cp >> 6 & 0x3F)) * FNV_PRIME;
+                    h = (h ^ (0x80 | cp & 0x3F)) * FNV_PRIME;
+                } else {
+                    h = (h ^ '?') * FNV_PRIME;
+                }
+            } else {
+                h = (h ^ (0xE0 | c >> 12)) * FNV_PRIME;
+                h = (h ^ (0x80 | c >> 6 & 0x3F)) * FNV_PRIME;
+                h = (h ^ (0x80 | c & 0x3F)) * FNV_PRIME;
+            }
+        }
+        return finish(h);
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 注册表：静态工厂方法返回享元实例
+     */
+    static final class AnimalTypeRegistry {
+        private final AtomicReference<Snapshot> snapshot;
+
+        private AnimalTypeRegistry(Snapshot snapshot) {
+            this.snapshot = new AtomicReference<>(snapshot);
+        }
+
+        /**
+         * 启动时加载类型目录（重复名称只保留一个）
+         */
+        static AnimalTypeRegistry load(Collection<String> names) {
+            Set<String> unique = new LinkedHashSet<>(names);
+            AnimalType[] types = new AnimalType[unique.size()];
+            int id = 0;
+            for (String name : unique) {
+                types[id] = new AnimalType(id, name);
+                id++;
+            }
+            return new AnimalTypeRegistry(new Snapshot(types));
+        }
+
+        int size() { return snapshot.get().types.length; }
+
+        AnimalType valueOf(String name) {
+            AnimalType t = lookup(name, 0, name.length());
+            if (t == null) throw new IllegalArgumentException("未知动物类型: " + name);
+            return t;
+        }
+
+        AnimalType lookup(CharSequence cs, int start, int end) {
+            return lookup(snapshot.get(), cs, start, end);
+        }
+
+        private static AnimalType lookup(Snapshot s, CharSequence cs, int start, int end) {
+            AnimalType t = s.find(hash(cs, start, end));
+            return t != null && contentEquals(t.name, cs, start, end) ? t : null;
+        }
+
+        AnimalType lookup(byte[] utf8, int off, int len) {
+            AnimalType t = snapshot.get().find(hash(utf8, off, len));
+            return t != null && Arrays.equals(t.utf8, 0, t.utf8.length, utf8, off, off + len) ? t : null;
+        }
+
+        private static boolean contentEquals(String name, CharSequence cs, int start, int end) {
+            if (name.length() != end - start) return false;
+            for (int i = 0; i < name.length(); i++) {
+                if (name.charAt(i) != cs.charAt(start + i)) return false;
+            }
+            return true;
+        }
+
+        /**
+         * 无锁驻留：已存在则返回已有实例，否则构建新快照并 CAS 发布
+         */
+        AnimalType intern(String name) {
+            while (true) {
+                Snapshot current = snapshot.get();
+                AnimalType existing = lookup(current, name, 0, name.length());
+                if (existing != null) return existing;
+
+                AnimalType created = new AnimalType(current.types.length, name);
+                AnimalType[] types = Arrays.copyOf(current.types, current.types.length + 1);
+                types[created.id] = created;
+                if (snapshot.compareAndSet(current, new Snapshot(types))) {
+                    return created;
+                }
+                // 其他线程抢先发布了新快照，重试（可能对方驻留的正是同一个名称）
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        List<String> catalog = new ArrayList<>(List.of("狗", "猫", "鸟"));
+        for (int i = 0; i < 5_000; i++) {
+            catalog.add("品种-" + i);
+        }
+        long start = System.nanoTime();
+        AnimalTypeRegistry registry = AnimalTypeRegistry.load(catalog);
+        System.out.printf("构建 %d 个类型的完美哈希: %.1f ms%n", registry.size(), (System.nanoTime() - start) / 1e6);
+
+        AnimalType t1 = registry.valueOf("狗");
+        AnimalType t2 = registry.lookup("消息: 狗", 4, 5);
+        byte[] message = "type=狗;weight=20".getBytes(StandardCharsets.UTF_8);
+        AnimalType t3 = registry.lookup(message, 5, "狗".getBytes(StandardCharsets.UTF_8).length);
+        System.out.println("String / CharSequence 片段 / byte[] 片段返回同一实例: " + (t1 == t2 && t2 == t3));
+        System.out.println("未知类型: " + registry.lookup("恐龙", 0, 2));
+
+        AnimalType dino = registry.intern("恐龙");
+        System.out.println("驻留后: " + registry.valueOf("恐龙") + "，同一实例: " + (dino == registry.intern("恐龙")));
+
+        // 每条消息从 byte[] 中取出类型名：先建 String 再查 HashMap vs 直接在字节片段上查
+        Map<String, AnimalType> hashMap = new HashMap<>();
+        for (String name : catalog) hashMap.put(name, registry.valueOf(name));
+        byte[][] messages = new byte[catalog.size()][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = catalog.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        int rounds = 500;
+        long sum = 0;
+        for (int warm = 0; warm < 2; warm++) {
+            long before = allocatedBytes();
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (byte[] m : messages) {
+                    sum += hashMap.get(new String(m, 0, m.length, StandardCharsets.UTF_8)).id();
+                }
+            }
+            long mapTime = System.nanoTime() - start;
+            long mapBytes = allocatedBytes() - before;
+
+            before = allocatedBytes();
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (byte[] m : messages) {
+                    sum += registry.lookup(m, 0, m.length).id();
+                }
+            }
+            long mphTime = System.nanoTime() - start;
+            long mphBytes = allocatedBytes() - before;
+            if (warm == 1) {
+                int ops = rounds * messages.length;
+                System.out.printf("%n%,d 次从 byte[] 查找：%n", ops);
+                System.out.printf("new String + HashMap: %5.1f ns/次，分配 %,d 字节%n", mapTime / (double) ops, mapBytes);
+                System.out.printf("完美哈希字节查找:     %5.1f ns/次，分配 %,d 字节%n", mphTime / (double) ops, mphBytes);
+            }
+        }
+        if (sum == 42) System.out.println();
+
+        System.out.println("\n关键：静态工厂控制实例，查找路径上既不创建类型对象，也不创建 String");
+    }
+}
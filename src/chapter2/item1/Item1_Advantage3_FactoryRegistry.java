@@ -0,0 +1,148 @@
+package chapter2.item1;
+
+import chapter2.item1.Item1_Advantage3_ReturnSubtype.Animal;
+import chapter2.item1.Item1_Advantage3_ReturnSubtype.AnimalFactory;
+import chapter2.item1.Item1_Advantage3_ReturnSubtype.Cat;
+import chapter2.item1.Item1_Advantage3_ReturnSubtype.Dog;
+
+import java.lang.invoke.*;
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 演示 Effective Java 第1条：用静态工厂方法代替构造器
+ *
+ * 优势3 进阶：运行时生成工厂的注册表
+ *
+ * Item1_Advantage3_ReturnSubtype.AnimalFactory.create() 用一串 equals 判断类型，
+ * 插件注册的子类型只能通过反射 newInstance() 创建。改进：
+ * 1. 子类型按 Class 注册，注册时用 LambdaMetafactory 生成一个 Supplier，
+ *    它的 get() 就是一条 new 指令，开销与直接 new 相当
+ * 2. 按字符串键用哈希表分派，按 Class 用 ClassValue 分派，不再逐个 equals
+ * 3. 客户端仍然只看到 Animal 接口（优势3 的本意不变）
+ *
+ * 注意：构造器必须对传入的 Lookup 可访问；插件应传入自己的 MethodHandles.lookup()。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item1_Advantage3_FactoryRegistry {
+
+    static final class AnimalFactoryRegistry {
+        private final Map<String, Supplier<? extends Animal>> byKey = new ConcurrentHashMap<>();
+        private final Map<Class<?>, Supplier<? extends Animal>> byType = new ConcurrentHashMap<>();
+
+        // ClassValue 把工厂缓存在 Class 对象上，按类型查找只需一次哈希
+        private final ClassValue<Supplier<? extends Animal>> typeCache = new ClassValue<>() {
+            @Override
+            protected Supplier<? extends Animal> computeValue(Class<?> type) {
+                Supplier<? extends Animal> s = byType.get(type);
+                if (s == null) throw new IllegalArgumentException("未注册的类型: " + type.getName());
+                return s;
+            }
+        };
+
+        <T extends Animal> void register(String key, Class<T> type) {
+            register(key, type, MethodHandles.lookup());
+        }
+
+        /**
+         * 注册子类型：为其无参构造器生成 Supplier
+         *
+         * @param lookup 对构造器有访问权限的 Lookup，插件传入自己的 MethodHandles.lookup()
+         */
+        <T extends Animal> void register(String key, Class<T> type, MethodHandles.Lookup lookup) {
+            Supplier<T> factory = generate(type, lookup);
+            byType.put(type, factory);
+            // 重新注册时丢弃 ClassValue 中的旧工厂，否则 create(Class) 会一直返回旧的 Supplier；
+            // 与正在进行的 computeValue() 竞争时，ClassValue 保证旧值不会再被安装
+            typeCache.remove(type);
+            byKey.put(key, factory);
+        }
+
+        @SuppressWarnings("unchecked")
+        static <T> Supplier<T> generate(Class<T> type, MethodHandles.Lookup lookup) {
+            try {
+                MethodHandle ctor = lookup.findConstructor(type, MethodType.methodType(void.class));
+                CallSite site = LambdaMetafactory.metafactory(
+                        lookup,
+                        "get",                                    // 实现的接口方法名
+                        MethodType.methodType(Supplier.class),    // 工厂签名：() -> Supplier
+                        MethodType.methodType(Object.class),      // 擦除后的 get() 签名
+                        ctor,                                     // 实现：new T()
+                        MethodType.methodType(type));             // 具体化的 get() 签名
+                return (Supplier<T>) site.getTarget().invoke();
+            } catch (Throwable e) {
+                throw new IllegalArgumentException("无法为 " + type.getName() + " 生成工厂", e);
+            }
+        }
+
+        Animal create(String key) {
+            Supplier<? extends Animal> s = byKey.get(key);
+            if (s == null) throw new IllegalArgumentException("未知类型: " + key);
+            return s.get();
+        }
+
+        <T extends Animal> T create(Class<T> type) {
+            return type.cast(typeCache.get(type).get());
+        }
+    }
+
+    // 插件提供的子类型：编写注册表时并不知道它
+    static class Parrot implements Animal {
+        @Override
+        public void makeSound() {
+            System.out.println("你好！你好！");
+        }
+    }
+
+    @FunctionalInterface
+    interface Factory {
+        Animal create() throws Exception;
+    }
+
+    private static double nanosPerCreate(Factory factory, int n) throws Exception {
+        Animal[] sink = new Animal[1024];   // 让对象逃逸，避免分配被 JIT 消除
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sink[i & 1023] = factory.create();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (double) n;
+    }
+
+    public static void main(String[] args) throws Exception {
+        AnimalFactoryRegistry registry = new AnimalFactoryRegistry();
+        registry.register("狗", Dog.class);
+        registry.register("猫", Cat.class);
+        registry.register("鹦鹉", Parrot.class);
+
+        registry.create("狗").makeSound();
+        registry.create("鹦鹉").makeSound();
+        Parrot parrot = registry.create(Parrot.class);
+        System.out.println("按 Class 创建得到的类型: " + parrot.getClass().getSimpleName());
+
+        int n = 2_000_000;
+        Constructor<Cat> reflective = Cat.class.getDeclaredConstructor();
+        MethodHandle handle = MethodHandles.lookup().findConstructor(Cat.class, MethodType.methodType(void.class));
+        System.out.println("\n创建一只猫的开销：");
+        System.out.printf("直接 new:              %5.1f ns%n", nanosPerCreate(Cat::new, n));
+        System.out.printf("生成的 Supplier(键):   %5.1f ns%n", nanosPerCreate(() -> registry.create("猫"), n));
+        System.out.printf("生成的 Supplier(类型): %5.1f ns%n", nanosPerCreate(() -> registry.create(Cat.class), n));
+        System.out.printf("if-equals 链:          %5.1f ns%n", nanosPerCreate(() -> AnimalFactory.create("猫"), n));
+        System.out.printf("MethodHandle.invoke:   %5.1f ns%n", nanosPerCreate(() -> {
+            try {
+                return (Animal) handle.invoke();
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }, n));
+        System.out.printf("反射 newInstance:      %5.1f ns%n", nanosPerCreate(reflective::newInstance, n));
+
+        System.out.println("\n关键：客户端只需知道 Animal 接口；新类型注册即可用，不必修改 if 链，也不必走反射");
+    }
+}
@@ -0,0 +1,148 @@
+package chapter2.item1;
+
+import chapter2.item1.Item1_Advantage4_VaryByParameter.FeedingFactory;
+import chapter2.item1.Item1_Advantage4_VaryByParameter.FeedingStrategy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 演示 Effective Java 第1条：用静态工厂方法代替构造器
+ *
+ * 优势4 进阶：规范策略实例 + 按策略分组的批量喂食
+ *
+ * FeedingFactory.getStrategy() 现在返回规范实例，同一种动物永远拿到同一个策略对象。
+ * 这带来一个额外好处：可以按对象身份把一批动物按策略分组（策略类不覆盖 equals，
+ * LinkedHashMap 比较的就是身份，并且按首次出现的顺序输出分组），
+ * 得到可在每个喂食周期复用的 FeedingPlan，每个策略每组只调用一次。
+ *
+ * 逐只调用时，每只动物都要按类型名查一次策略；分组后查找只在建立计划时做一次，
+ * 每个喂食周期只剩按下标取体重、调用策略这两步。
+ * 注意：dailyPortion() 仍然只有一个调用点，三种策略都经过它，这里并不会因为分组而变成单态调用，
+ * 节省的是每只动物的策略查找。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item1_Advantage4_BatchFeeding {
+
+    /**
+     * 一个策略对应的一组动物（存放下标，避免搬动数据）
+     */
+    static final class Group {
+        final FeedingStrategy strategy;
+        int[] indices = new int[16];
+        int size;
+
+        Group(FeedingStrategy strategy) {
+            this.strategy = strategy;
+        }
+
+        void add(int index) {
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+            }
+            indices[size++] = index;
+        }
+    }
+
+    /**
+     * 喂食计划：一批动物按策略分好组，每个喂食周期都可以复用
+     */
+    static final class FeedingPlan {
+        private final Group[] groups;
+
+        private FeedingPlan(Group[] groups) {
+            this.groups = groups;
+        }
+
+        /**
+         * 分组：依赖规范实例，用身份比较即可
+         */
+        static FeedingPlan of(String[] animalTypes) {
+            Map<FeedingStrategy, Group> groups = new LinkedHashMap<>();
+            for (int i = 0; i < animalTypes.length; i++) {
+                FeedingStrategy s = FeedingFactory.getStrategy(animalTypes[i]);
+                Group g = groups.get(s);
+                if (g == null) groups.put(s, g = new Group(s));
+                g.add(i);
+            }
+            return new FeedingPlan(groups.values().toArray(new Group[0]));
+        }
+
+        /**
+         * 批量喂食：每个策略每组只调用一次 feed()
+         */
+        void feedAll() {
+            for (Group g : groups) {
+                System.out.print("  " + g.size + " 只: ");
+                g.strategy.feed();
+            }
+        }
+
+        /**
+         * 批量计算食量：策略只在每组开始时取一次，不再逐只查找
+         */
+        double[] dailyPortions(double[] weights) {
+            double[] portions = new double[weights.length];
+            for (Group g : groups) {
+                FeedingStrategy s = g.strategy;
+                int[] idx = g.indices;
+                for (int i = 0; i < g.size; i++) {
+                    portions[idx[i]] = s.dailyPortion(weights[idx[i]]);
+                }
+            }
+            return portions;
+        }
+    }
+
+    // 逐只调用：每只动物都查一次策略并做一次多态调用
+    static double[] dailyPortionsOneByOne(String[] animalTypes, double[] weights) {
+        double[] portions = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            portions[i] = FeedingFactory.getStrategy(animalTypes[i]).dailyPortion(weights[i]);
+        }
+        return portions;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("批量喂食（每个策略只调用一次）：");
+        FeedingPlan.of(new String[]{"狗", "猫", "兔", "狗", "猫", "狗"}).feedAll();
+
+        String[] kinds = {"狗", "猫", "兔"};
+        int n = 2_000_000;
+        Random random = new Random(7);
+        String[] types = new String[n];
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            types[i] = kinds[random.nextInt(kinds.length)];   // 三种类型随机交错
+            weights[i] = 1 + random.nextDouble() * 30;
+        }
+
+        long start = System.nanoTime();
+        FeedingPlan plan = FeedingPlan.of(types);   // 动物名单不变时，分组只做一次
+        long planning = System.nanoTime() - start;
+
+        boolean consistent = true;
+        long oneByOne = 0, batch = 0;
+        for (int round = 0; round < 5; round++) {   // 前几轮用于预热
+            start = System.nanoTime();
+            double[] a = dailyPortionsOneByOne(types, weights);
+            oneByOne = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double[] b = plan.dailyPortions(weights);
+            batch = System.nanoTime() - start;
+
+            consistent &= Arrays.equals(a, b);   // 两种做法执行的是同一个计算，结果应逐位相同
+        }
+        System.out.printf("%n%,d 只动物计算食量（每个喂食周期）：%n", n);
+        System.out.printf("逐只查策略 + 多态调用: %d ms%n", oneByOne / 1_000_000);
+        System.out.printf("按分组计划批量执行:    %d ms（一次性分组 %d ms）%n",
+                batch / 1_000_000, planning / 1_000_000);
+        System.out.println("结果一致: " + consistent);
+
+        System.out.println("\n关键：规范实例让策略可以按身份分组，策略查找只在建立计划时做一次");
+    }
+}
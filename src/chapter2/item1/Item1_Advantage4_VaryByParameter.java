@@ -11,6 +11,11 @@ public class Item1_Advantage4_VaryByParameter {
     
     interface FeedingStrategy {
         void feed();
+        
+        // 每日食量（千克），按体重比例计算。后加的方法给出默认实现，已有的实现类不必跟着修改
+        default double dailyPortion(double weightKg) {
+            return weightKg * 0.04;
+        }
     }
     
     static class MeatFeeding implements FeedingStrategy {
@@ -18,6 +23,11 @@ public class Item1_Advantage4_VaryByParameter {
         public void feed() {
             System.out.println("喂食肉类");
         }
+        
+        @Override
+        public double dailyPortion(double weightKg) {
+            return weightKg * 0.03;
+        }
     }
     
     static class VegetableFeeding implements FeedingStrategy {
@@ -25,6 +35,11 @@ public class Item1_Advantage4_VaryByParameter {
         public void feed() {
             System.out.println("喂食蔬菜");
         }
+        
+        @Override
+        public double dailyPortion(double weightKg) {
+            return weightKg * 0.05;
+        }
     }
     
     static class MixedFeeding implements FeedingStrategy {
@@ -35,11 +50,16 @@ public class Item1_Advantage4_VaryByParameter {
     }
     
     static class FeedingFactory {
+        // 策略无状态，每种只需一个规范实例（结合优势2：不必每次创建新对象）
+        private static final FeedingStrategy MEAT = new MeatFeeding();
+        private static final FeedingStrategy VEGETABLE = new VegetableFeeding();
+        private static final FeedingStrategy MIXED = new MixedFeeding();
+        
         public static FeedingStrategy getStrategy(String animalType) {
             switch (animalType) {
-                case "狗": return new MixedFeeding();
-                case "猫": return new MeatFeeding();
-                case "兔": return new VegetableFeeding();
+                case "狗": return MIXED;
+                case "猫": return MEAT;
+                case "兔": return VEGETABLE;
                 default: throw new IllegalArgumentException("未知动物");
             }
         }
@@ -53,5 +73,7 @@ public class Item1_Advantage4_VaryByParameter {
         System.out.print("狗: "); dogFeeding.feed();
         System.out.print("猫: "); catFeeding.feed();
         System.out.print("兔: "); rabbitFeeding.feed();
+        
+        System.out.println("\n同一参数返回同一实例: " + (dogFeeding == FeedingFactory.getStrategy("狗")));
     }
 }
@@ -0,0 +1,213 @@
+package chapter2.item1;
+
+import chapter2.item1.Item1_Advantage5_ServiceProvider.AnimalProvider;
+import chapter2.item1.Item1_Advantage5_ServiceProvider.AnimalService;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 演示 Effective Java 第1条：用静态工厂方法代替构造器
+ *
+ * 优势5 进阶：可热替换的提供者注册表（读-复制-更新，RCU）
+ *
+ * AnimalServiceManager.register() 直接写 ConcurrentHashMap，无法原子地替换提供者，
+ * 也无法知道旧提供者什么时候没人用了。零停机升级需要：
+ * 1. 无锁查找：注册表是不可变快照，读取只做一次 volatile 读和一次 HashMap 查找
+ * 2. 原子替换：复制快照、修改、CAS 发布新快照
+ * 3. 宽限期：每个版本的句柄记录在途使用者数量，旧版本退役且使用者归零后回调一次
+ *
+ * 使用者通过 Lease（租约）持有提供者，Lease 实现 AutoCloseable，用 try-with-resources 归还。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item1_Advantage5_HotSwapRegistry {
+
+    /**
+     * 某个提供者的一个版本
+     */
+    static final class ProviderHandle {
+        private final String name;
+        private final long version;
+        private final AnimalProvider provider;
+        private final Consumer<ProviderHandle> onRetired;
+        private final AtomicLong users = new AtomicLong();
+        private final AtomicBoolean callbackFired = new AtomicBoolean();
+        private volatile boolean retired;
+
+        ProviderHandle(String name, long version, AnimalProvider provider, Consumer<ProviderHandle> onRetired) {
+            this.name = name;
+            this.version = version;
+            this.provider = provider;
+            this.onRetired = onRetired;
+        }
+
+        String name() { return name; }
+
+        long version() { return version; }
+
+        long users() { return users.get(); }
+
+        void retire() {
+            retired = true;
+            if (users.get() == 0) fireOnce();
+        }
+
+        void release() {
+            if (users.decrementAndGet() == 0 && retired) fireOnce();
+        }
+
+        // 退役检查和归零检查都可能触发，保证回调只执行一次
+        private void fireOnce() {
+            if (callbackFired.compareAndSet(false, true) && onRetired != null) {
+                onRetired.accept(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + "@v" + version;
+        }
+    }
+
+    /**
+     * 租约：持有期间对应版本不会触发宽限期回调
+     */
+    static final class Lease implements AutoCloseable {
+        private final ProviderHandle handle;
+        private boolean closed;
+
+        private Lease(ProviderHandle handle) {
+            this.handle = handle;
+        }
+
+        AnimalService newService() {
+            return handle.provider.newService();
+        }
+
+        ProviderHandle handle() { return handle; }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                handle.release();
+            }
+        }
+    }
+
+    static final class HotSwapRegistry {
+        // 不可变快照：从不原地修改，只整体替换
+        private final AtomicReference<Map<String, ProviderHandle>> snapshot =
+                new AtomicReference<>(Map.of());
+        private final AtomicLong versions = new AtomicLong();
+
+        /**
+         * 注册或替换提供者，返回新版本句柄
+         *
+         * @param onRetired 旧版本没有使用者之后调用（只调用一次）
+         */
+        ProviderHandle swap(String name, AnimalProvider provider, Consumer<ProviderHandle> onRetired) {
+            ProviderHandle next = new ProviderHandle(name, versions.incrementAndGet(), provider, onRetired);
+            while (true) {
+                Map<String, ProviderHandle> current = snapshot.get();
+                Map<String, ProviderHandle> copy = new HashMap<>(current);   // 读-复制-更新
+                ProviderHandle old = copy.put(name, next);
+                if (snapshot.compareAndSet(current, Map.copyOf(copy))) {
+                    if (old != null) old.retire();
+                    return next;
+                }
+            }
+        }
+
+        /**
+         * 无锁获取租约
+         *
+         * 先增加使用者计数，再确认句柄仍是当前版本；如果恰好被替换，撤销后重试。
+         * 这样 retire() 要么看到计数大于 0（由最后一个 release() 触发回调），
+         * 要么读取方看到已退役（改用新版本），不会在使用中触发回调。
+         */
+        Lease acquire(String name) {
+            while (true) {
+                ProviderHandle handle = snapshot.get().get(name);
+                if (handle == null) throw new IllegalArgumentException("未注册的服务: " + name);
+                handle.users.incrementAndGet();
+                if (!handle.retired) return new Lease(handle);
+                handle.release();
+            }
+        }
+    }
+
+    static class DogCareV2 implements AnimalService {
+        @Override
+        public void care() {
+            System.out.println("遛狗、喂食、洗澡、智能项圈监测健康");
+        }
+    }
+
+    private static double nanosPerLookup(HotSwapRegistry registry, int n) {
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < n; i++) {
+            try (Lease lease = registry.acquire("狗")) {
+                sum += lease.handle().version();
+            }
+        }
+        if (sum == 42) System.out.println();   // 防止循环被优化掉
+        return (System.nanoTime() - start) / (double) n;
+    }
+
+    public static void main(String[] args) throws Exception {
+        HotSwapRegistry registry = new HotSwapRegistry();
+        Consumer<ProviderHandle> log = h -> System.out.println("  ♻️  宽限期结束，旧版本可以卸载: " + h);
+
+        registry.swap("狗", Item1_Advantage5_ServiceProvider.DogCareService::new, log);
+
+        System.out.println("升级过程中有在途使用者：");
+        try (Lease inFlight = registry.acquire("狗")) {
+            registry.swap("狗", DogCareV2::new, log);
+            System.out.println("  已发布新版本，旧版本 " + inFlight.handle() + " 仍有 "
+                    + inFlight.handle().users() + " 个使用者");
+            System.out.print("  旧租约: "); inFlight.newService().care();
+            try (Lease fresh = registry.acquire("狗")) {
+                System.out.print("  新租约: "); fresh.newService().care();
+            }
+            System.out.println("  归还旧租约...");
+        }
+
+        System.out.println("\n替换期间的查找开销：");
+        int n = 5_000_000;
+        nanosPerLookup(registry, n);   // 预热
+        double quiet = nanosPerLookup(registry, n);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong swaps = new AtomicLong();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Thread swapper = new Thread(() -> {
+            while (running.get()) {
+                registry.swap("狗", DogCareV2::new, null);
+                swaps.incrementAndGet();
+                try {
+                    Thread.sleep(1);   // 每毫秒升级一次，远比真实场景频繁
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            stopped.countDown();
+        });
+        swapper.start();
+        double busy = nanosPerLookup(registry, n);
+        running.set(false);
+        stopped.await();
+
+        System.out.printf("  无替换:                  %.1f ns/次%n", quiet);
+        System.out.printf("  每毫秒替换（共 %,d 次）: %.1f ns/次%n", swaps.get(), busy);
+
+        System.out.println("\n关键：读取方从不加锁，替换对读取方只是一次引用切换");
+    }
+}
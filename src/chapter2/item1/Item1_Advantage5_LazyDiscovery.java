@@ -0,0 +1,224 @@
+package chapter2.item1;
+
+import chapter2.item1.Item1_Advantage5_ServiceProvider.AnimalProvider;
+import chapter2.item1.Item1_Advantage5_ServiceProvider.AnimalService;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static chapter2.Benchmarks.allocatedBytes;
+
+/**
+ * 演示 Effective Java 第1条：用静态工厂方法代替构造器
+ *
+ * 优势5 进阶：基于 ServiceLoader 的延迟服务发现
+ *
+ * Item1_Advantage5_ServiceProvider.AnimalServiceManager 要求手工注册每个提供者，
+ * 且每次 getService() 都调用 provider.newService() 创建新对象。改进：
+ * 1. 提供者列在索引文件 META-INF/services/...$AnimalProvider 中，
+ *    ServiceLoader 只读这个文件，启动时不扫描类路径。本仓库没有构建脚本，索引是手写的，
+ *    新增提供者时要把类名加进去；也可以用注解处理器在编译时生成
+ * 2. 名称和作用域写在 @ProviderInfo 注解上，建索引时只加载类、不实例化
+ * 3. 提供者在第一次使用时才实例化
+ * 4. 作用域：PROTOTYPE 每次新建；SINGLETON 复用同一实例；POOLED 从对象池借还，
+ *    SINGLETON / POOLED 在热路径上不分配对象
+ *
+ * 这正是 JDBC 的做法：DriverManager 通过 ServiceLoader 发现驱动，编写时驱动类可以不存在。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item1_Advantage5_LazyDiscovery {
+
+    enum Scope { PROTOTYPE, SINGLETON, POOLED }
+
+    /**
+     * 提供者元数据：不实例化提供者即可读取
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @interface ProviderInfo {
+        String name();
+        Scope scope() default Scope.PROTOTYPE;
+        int poolSize() default 8;
+    }
+
+    /**
+     * 注册表中的一项：持有提供者句柄，实例按需创建
+     */
+    static final class Entry {
+        private final String name;
+        private final Scope scope;
+        private final ServiceLoader.Provider<AnimalProvider> handle;   // 手工注册时为 null
+        private final ArrayBlockingQueue<AnimalService> pool;          // 数组实现，借还不分配节点
+        private volatile AnimalProvider provider;
+        private volatile AnimalService singleton;
+
+        Entry(String name, Scope scope, int poolSize,
+              ServiceLoader.Provider<AnimalProvider> handle, AnimalProvider provider) {
+            this.name = name;
+            this.scope = scope;
+            this.handle = handle;
+            this.provider = provider;
+            this.pool = scope == Scope.POOLED ? new ArrayBlockingQueue<>(poolSize) : null;
+        }
+
+        // 双重检查：第一次使用时才实例化提供者
+        private AnimalProvider provider() {
+            AnimalProvider p = provider;
+            if (p == null) {
+                synchronized (this) {
+                    p = provider;
+                    if (p == null) {
+                        System.out.println("  ⏳ 首次使用，实例化提供者: " + name);
+                        provider = p = handle.get();
+                    }
+                }
+            }
+            return p;
+        }
+
+        AnimalService acquire() {
+            switch (scope) {
+                case SINGLETON: {
+                    AnimalService s = singleton;
+                    if (s == null) {
+                        synchronized (this) {
+                            s = singleton;
+                            if (s == null) singleton = s = provider().newService();
+                        }
+                    }
+                    return s;
+                }
+                case POOLED: {
+                    AnimalService s = pool.poll();
+                    return s != null ? s : provider().newService();
+                }
+                default:
+                    return provider().newService();
+            }
+        }
+
+        void release(AnimalService service) {
+            if (scope == Scope.POOLED) {
+                pool.offer(service);   // 池满则丢弃，交给 GC
+            }
+        }
+    }
+
+    static class LazyAnimalServiceManager {
+        private static final Map<String, Entry> manual = new ConcurrentHashMap<>();
+
+        // 延迟初始化持有者类：第一次调用 getService() 时才读取索引（第83条）
+        private static final class IndexHolder {
+            static final Map<String, Entry> DISCOVERED = discover();
+        }
+
+        private static Map<String, Entry> discover() {
+            Map<String, Entry> index = new ConcurrentHashMap<>();
+            ServiceLoader.load(AnimalProvider.class).stream().forEach(handle -> {
+                // type() 只加载类，不调用构造器
+                ProviderInfo info = handle.type().getAnnotation(ProviderInfo.class);
+                if (info == null) {
+                    System.err.println("提供者缺少 @ProviderInfo，已忽略: " + handle.type().getName());
+                    return;
+                }
+                index.put(info.name(), new Entry(info.name(), info.scope(), info.poolSize(), handle, null));
+            });
+            return index;
+        }
+
+        // 仍然支持手工注册，手工注册优先于索引
+        public static void register(String name, AnimalProvider provider, Scope scope) {
+            manual.put(name, new Entry(name, scope, 8, null, provider));
+        }
+
+        public static AnimalService getService(String name) {
+            return entry(name).acquire();
+        }
+
+        // POOLED 作用域的服务用完后归还；其他作用域调用无副作用
+        public static void release(String name, AnimalService service) {
+            entry(name).release(service);
+        }
+
+        private static Entry entry(String name) {
+            Entry e = manual.get(name);
+            if (e == null) e = IndexHolder.DISCOVERED.get(name);
+            if (e == null) throw new IllegalArgumentException("未注册的服务: " + name);
+            return e;
+        }
+    }
+
+    // ==================== 索引中列出的提供者 ====================
+    // ServiceLoader 要求提供者是 public 类，并有 public 无参构造器
+
+    @ProviderInfo(name = "狗", scope = Scope.SINGLETON)
+    public static class DogCareProvider implements AnimalProvider {
+        @Override
+        public AnimalService newService() {
+            return new Item1_Advantage5_ServiceProvider.DogCareService();
+        }
+    }
+
+    @ProviderInfo(name = "猫", scope = Scope.POOLED, poolSize = 4)
+    public static class CatCareProvider implements AnimalProvider {
+        @Override
+        public AnimalService newService() {
+            return new Item1_Advantage5_ServiceProvider.CatCareService();
+        }
+    }
+
+    @ProviderInfo(name = "兔")
+    public static class RabbitCareProvider implements AnimalProvider {
+        @Override
+        public AnimalService newService() {
+            return () -> System.out.println("喂胡萝卜、梳毛");
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("启动：没有手工注册，也没有实例化任何提供者");
+
+        System.out.println("\n第一次获取服务：");
+        AnimalService dog1 = LazyAnimalServiceManager.getService("狗");
+        AnimalService dog2 = LazyAnimalServiceManager.getService("狗");
+        System.out.print("狗护理: "); dog1.care();
+        System.out.println("SINGLETON 作用域 dog1 == dog2: " + (dog1 == dog2));
+
+        AnimalService cat1 = LazyAnimalServiceManager.getService("猫");
+        LazyAnimalServiceManager.release("猫", cat1);
+        AnimalService cat2 = LazyAnimalServiceManager.getService("猫");
+        System.out.print("猫护理: "); cat2.care();
+        System.out.println("POOLED 作用域归还后复用 cat1 == cat2: " + (cat1 == cat2));
+
+        AnimalService rabbit = LazyAnimalServiceManager.getService("兔");
+        System.out.print("兔护理: "); rabbit.care();
+        System.out.println("\n（只有被用到的提供者才会被实例化）");
+
+        // 热路径对比：原实现每次 newService()，SINGLETON 直接返回缓存实例
+        Item1_Advantage5_ServiceProvider.AnimalServiceManager.register("狗", Item1_Advantage5_ServiceProvider.DogCareService::new);
+        int n = 1_000_000;
+        AnimalService[] sink = new AnimalService[1024];   // 让结果逃逸，避免分配被 JIT 消除
+        long before = allocatedBytes();
+        for (int i = 0; i < n; i++) {
+            sink[i & 1023] = Item1_Advantage5_ServiceProvider.AnimalServiceManager.getService("狗");
+        }
+        long eager = allocatedBytes() - before;
+        before = allocatedBytes();
+        for (int i = 0; i < n; i++) {
+            sink[i & 1023] = LazyAnimalServiceManager.getService("狗");
+        }
+        long lazy = allocatedBytes() - before;
+        System.out.printf("%n%,d 次 getService() 的堆分配：%n", n);
+        System.out.printf("每次 newService(): %,d 字节%n", eager);
+        System.out.printf("SINGLETON 作用域:  %,d 字节%n", lazy);
+
+        System.out.println("\n关键：提供者在编写管理器时不存在，只通过索引文件被发现");
+    }
+}
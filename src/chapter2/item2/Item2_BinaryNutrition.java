@@ -0,0 +1,356 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_Builder.AnimalNutrition;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：定长二进制记录格式，免反序列化读取
+ *
+ * AnimalNutrition 在进程之间以文本传递，读方要先解析再构建对象。这里定义一种定长二进制布局：
+ * 1. 文件头 16 字节（魔数、版本、记录长度、记录数、物种数），之后每条记录固定 24 字节，小端序
+ * 2. 名字不放进记录：同一批数据里物种很少，记录只存 2 字节的物种编号，
+ *    物种字典（每项 2 字节长度 + UTF-8 名字）写在所有记录之后
+ * 3. NutritionWriter 把 AnimalNutrition 顺序写入文件，关闭时写出字典并回填文件头
+ * 4. MappedNutritionFile 把文件整个映射进内存，NutritionRecord 是游标式的享元，
+ *    getter 直接按偏移量读取映射缓冲区，不创建对象；需要对象时再 toNutrition()
+ *
+ * 记录布局（偏移量 / 字节数）：
+ *   0/4 age   4/4 calories   8/4 fat   12/4 protein   16/4 vitamins
+ *   20/2 物种编号   22/2 补 0，让每条记录按 8 字节对齐
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_BinaryNutrition {
+
+    static final int MAGIC = 0x4E555452;   // "NUTR"
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 24;
+    static final int MAX_SPECIES = 0xFFFF;
+    static final int MAX_NAME_BYTES = 0xFFFF;
+
+    private static final int AGE = 0, CALORIES = 4, FAT = 8, PROTEIN = 12, VITAMINS = 16, SPECIES = 20;
+
+    /**
+     * 顺序写入记录；物种字典和记录数在 close() 时写出
+     */
+    static final class NutritionWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private final Map<String, Integer> speciesIds = new HashMap<>();
+        private final List<byte[]> species = new ArrayList<>();
+        private int count;
+
+        NutritionWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+        }
+
+        NutritionWriter write(AnimalNutrition n) throws IOException {
+            int id = speciesId(Objects.requireNonNull(n.name(), "名字不能为 null"));
+            if (buffer.remaining() < RECORD_SIZE) flush();
+            int base = buffer.position();
+            buffer.putInt(base + AGE, n.age())
+                    .putInt(base + CALORIES, n.calories())
+                    .putInt(base + FAT, n.fat())
+                    .putInt(base + PROTEIN, n.protein())
+                    .putInt(base + VITAMINS, n.vitamins())
+                    .putShort(base + SPECIES, (short) id)
+                    .putShort(base + SPECIES + 2, (short) 0);
+            buffer.position(base + RECORD_SIZE);
+            count++;
+            return this;
+        }
+
+        // 第一次见到的物种分配下一个编号
+        private int speciesId(String name) {
+            Integer id = speciesIds.get(name);
+            if (id != null) return id;
+            byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+            if (species.size() == MAX_SPECIES) {
+                throw new IllegalArgumentException("物种超过 " + MAX_SPECIES + " 种: " + name);
+            }
+            if (utf8.length > MAX_NAME_BYTES) {
+                throw new IllegalArgumentException("名字超过 " + MAX_NAME_BYTES + " 个 UTF-8 字节: " + name);
+            }
+            speciesIds.put(name, species.size());
+            species.add(utf8);
+            return species.size() - 1;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                int dictionarySize = 0;
+                for (byte[] name : species) dictionarySize += 2 + name.length;
+                ByteBuffer dictionary = ByteBuffer.allocate(dictionarySize).order(ByteOrder.LITTLE_ENDIAN);
+                for (byte[] name : species) dictionary.putShort((short) name.length).put(name);
+                dictionary.flip();
+                while (dictionary.hasRemaining()) channel.write(dictionary);   // 字典紧跟在最后一条记录之后
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE).putInt(count).putInt(species.size());
+                channel.write(header.flip(), 0);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * 只读映射整个文件；映射在缓冲区被回收时解除，关闭通道不影响已映射的内容
+     */
+    static final class MappedNutritionFile implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer records;
+        private final int count;
+        private final String[] species;
+
+        MappedNutritionFile(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long length = channel.size();
+                if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                    throw new IOException("文件长度不合法: " + length);
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                mapped.order(ByteOrder.LITTLE_ENDIAN);
+                if (mapped.getInt(0) != MAGIC || mapped.getShort(4) != VERSION || mapped.getShort(6) != RECORD_SIZE) {
+                    throw new IOException("不是版本 " + VERSION + " 的营养记录文件: " + file);
+                }
+                count = mapped.getInt(8);
+                long dictionary = HEADER_SIZE + (long) count * RECORD_SIZE;
+                if (count < 0 || dictionary > length) {
+                    throw new IOException("记录数 " + count + " 与文件长度 " + length + " 不符");
+                }
+                species = readSpecies(mapped, (int) dictionary, mapped.getInt(12));
+                records = mapped.slice(HEADER_SIZE, count * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // 字典只有几项，打开文件时解码成 String，之后读取名字不再分配
+        private static String[] readSpecies(ByteBuffer mapped, int offset, int n) throws IOException {
+            if (n < 0 || n > MAX_SPECIES) throw new IOException("物种数不合法: " + n);
+            String[] names = new String[n];
+            int pos = offset;
+            for (int i = 0; i < n; i++) {
+                if (pos + 2 > mapped.limit()) throw new IOException("物种字典被截断");
+                int len = Short.toUnsignedInt(mapped.getShort(pos));
+                if (pos + 2 + len > mapped.limit()) throw new IOException("物种字典被截断");
+                byte[] utf8 = new byte[len];
+                mapped.get(pos + 2, utf8);
+                names[i] = new String(utf8, StandardCharsets.UTF_8);
+                pos += 2 + len;
+            }
+            if (pos != mapped.limit()) throw new IOException("物种字典之后有多余的数据");
+            return names;
+        }
+
+        int size() { return count; }
+
+        // 物种在字典中的编号；文件里没有这个物种时返回 -1
+        int speciesId(String name) {
+            for (int i = 0; i < species.length; i++) {
+                if (species[i].equals(name)) return i;
+            }
+            return -1;
+        }
+
+        // 每个线程用自己的游标；游标之间共享同一块映射内存
+        NutritionRecord cursor() {
+            return new NutritionRecord(records, count, species);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * 享元游标：moveTo() 只改变偏移量，getter 直接读取缓冲区
+     */
+    static final class NutritionRecord {
+        private final ByteBuffer records;
+        private final int count;
+        private final String[] species;
+        private int base;
+
+        NutritionRecord(ByteBuffer records, int count, String[] species) {
+            this.records = records;
+            this.count = count;
+            this.species = species;
+        }
+
+        NutritionRecord moveTo(int index) {
+            base = Objects.checkIndex(index, count) * RECORD_SIZE;
+            return this;
+        }
+
+        int age() { return records.getInt(base + AGE); }
+
+        int calories() { return records.getInt(base + CALORIES); }
+
+        int fat() { return records.getInt(base + FAT); }
+
+        int protein() { return records.getInt(base + PROTEIN); }
+
+        int vitamins() { return records.getInt(base + VITAMINS); }
+
+        int speciesId() { return Short.toUnsignedInt(records.getShort(base + SPECIES)); }
+
+        // 返回字典里共享的 String，不分配；过滤时直接比较 speciesId() 更快
+        String name() {
+            int id = speciesId();
+            if (id >= species.length) throw new IllegalStateException("物种编号超出字典范围: " + id);
+            return species[id];
+        }
+
+        AnimalNutrition toNutrition(AnimalNutrition.ReusableBuilder builder) {
+            return builder.reset(name(), age())
+                    .calories(calories())
+                    .fat(fat())
+                    .protein(protein())
+                    .vitamins(vitamins())
+                    .build();
+        }
+    }
+
+    // ==================== 对照组：Java 序列化 ====================
+
+    static void serialize(AnimalNutrition[] all, Path file) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(all);
+        }
+    }
+
+    static AnimalNutrition[] deserialize(Path file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return (AnimalNutrition[]) in.readObject();
+        }
+    }
+
+    // 查询：某个物种的总卡路里
+    static long caloriesOf(AnimalNutrition[] all, String species) {
+        long sum = 0;
+        for (AnimalNutrition n : all) {
+            if (n.name().equals(species)) sum += n.calories();
+        }
+        return sum;
+    }
+
+    static long caloriesOf(MappedNutritionFile file, String species) {
+        int id = file.speciesId(species);
+        if (id < 0) return 0;
+        NutritionRecord r = file.cursor();
+        long sum = 0;
+        for (int i = 0; i < file.size(); i++) {
+            if (r.moveTo(i).speciesId() == id) sum += r.calories();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int n = 1_000_000;
+        String[] kinds = {"狗", "猫", "兔", "鸟", "鱼"};
+        Random random = new Random(21);
+        AnimalNutrition.ReusableBuilder builder = new AnimalNutrition.ReusableBuilder();
+        AnimalNutrition[] all = new AnimalNutrition[n];
+        for (int i = 0; i < n; i++) {
+            all[i] = builder.reset(kinds[random.nextInt(kinds.length)], random.nextInt(20))
+                    .calories(100 + random.nextInt(900))
+                    .fat(random.nextInt(50))
+                    .protein(random.nextInt(60))
+                    .vitamins(random.nextInt(30))
+                    .build();
+        }
+
+        // 映射要等缓冲区被回收才解除，Windows 上不能截断或删除仍被映射的文件，所以每轮写一个新文件
+        List<Path> binaries = new ArrayList<>();
+        Path serialized = Files.createTempFile("nutrition", ".ser");
+        try {
+            long binaryWrite = Long.MAX_VALUE, serialWrite = Long.MAX_VALUE;
+            long binaryRead = Long.MAX_VALUE, serialRead = Long.MAX_VALUE;
+            long binarySum = 0, serialSum = 0;
+            for (int round = 0; round < 5; round++) {   // 取各轮最短时间，前几轮相当于预热
+                Path binary = Files.createTempFile("nutrition", ".bin");
+                binaries.add(binary);
+                long start = System.nanoTime();
+                try (NutritionWriter writer = new NutritionWriter(binary)) {
+                    for (AnimalNutrition a : all) writer.write(a);
+                }
+                binaryWrite = Math.min(binaryWrite, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                serialize(all, serialized);
+                serialWrite = Math.min(serialWrite, System.nanoTime() - start);
+
+                // 读取 = 打开文件 + 得到可查询的数据 + 执行一次查询
+                start = System.nanoTime();
+                try (MappedNutritionFile file = new MappedNutritionFile(binary)) {
+                    binarySum = caloriesOf(file, "狗");
+                }
+                binaryRead = Math.min(binaryRead, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                serialSum = caloriesOf(deserialize(serialized), "狗");
+                serialRead = Math.min(serialRead, System.nanoTime() - start);
+            }
+
+            Path binary = binaries.get(binaries.size() - 1);
+            try (MappedNutritionFile file = new MappedNutritionFile(binary)) {
+                NutritionRecord first = file.cursor().moveTo(0);
+                System.out.println("第一条记录（原地读取）: " + first.name() + "，" + first.age() + " 岁，"
+                        + first.calories() + " 卡");
+                System.out.println("转成对象后与原对象相等: " + first.toNutrition(builder).equals(all[0]));
+            }
+
+            long serialSize = Files.size(serialized), binarySize = Files.size(binary);
+            System.out.printf("%n%,d 条记录，查询\"狗\"的总卡路里（结果一致: %s）：%n", n, binarySum == serialSum);
+            System.out.printf("Java 序列化  文件 %,11d 字节  写入 %4d ms  读取+查询 %4d ms%n",
+                    serialSize, serialWrite / 1_000_000, serialRead / 1_000_000);
+            System.out.printf("定长二进制   文件 %,11d 字节  写入 %4d ms  读取+查询 %4d ms%n",
+                    binarySize, binaryWrite / 1_000_000, binaryRead / 1_000_000);
+            System.out.printf("二进制文件是序列化文件的 %.0f%%（%.1f 字节/条）%n",
+                    100.0 * binarySize / serialSize, (binarySize - HEADER_SIZE) / (double) n);
+        } finally {
+            for (Path binary : binaries) {
+                try {
+                    Files.deleteIfExists(binary);
+                } catch (IOException e) {
+                    binary.toFile().deleteOnExit();   // 仍被映射（Windows）：退出时再删
+                }
+            }
+            Files.deleteIfExists(serialized);
+        }
+
+        System.out.println("\n关键：定长布局让记录可以按偏移量直接读取，映射文件即可查询，不必先构建对象");
+    }
+}
@@ -1,5 +1,9 @@
 package chapter2.item2;
 
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
 /**
  * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
  * 
@@ -16,7 +20,10 @@ public class Item2_Builder {
     /**
      * 正例：Builder 模式
      */
-    static class AnimalNutrition {
+    static class AnimalNutrition implements Serializable {
+        // 只用于和 Java 序列化做对比（见 Item2_BinaryNutrition）
+        private static final long serialVersionUID = 1L;
+        
         private final String name;           // 必需
         private final int age;               // 必需
         private final int calories;          // 可选
@@ -35,6 +42,9 @@ public class Item2_Builder {
             private int protein = 0;
             private int vitamins = 0;
             
+            // 规范化模式：build() 的结果交给它换成共享实例，默认原样返回
+            private UnaryOperator<AnimalNutrition> canonicalizer = UnaryOperator.identity();
+            
             public Builder(String name, int age) {
                 this.name = name;
                 this.age = age;
@@ -60,18 +70,135 @@ public class Item2_Builder {
                 return this;
             }
             
+            /**
+             * 规范化构建：之后 build() 返回 canonicalizer 给出的实例，例如规范表的 intern()。
+             * 构建器只接收一个函数，不依赖具体的规范表
+             */
+            public Builder canonical(UnaryOperator<AnimalNutrition> canonicalizer) {
+                this.canonicalizer = Objects.requireNonNull(canonicalizer);
+                return this;
+            }
+            
             public AnimalNutrition build() {
-                return new AnimalNutrition(this);
+                return canonicalizer.apply(new AnimalNutrition(this));
+            }
+        }
+        
+        /**
+         * 可复用的构建器：只给批量导入这类热路径用，每条记录前 reset()，不必为每条记录新建构建器。
+         * 必需参数要能重设，所以不是 final；普通代码仍然用 Builder，必需参数在构造器中一次给定。
+         * build() 会复制字段，复用不影响已构建的对象。不是线程安全的，每个线程持有自己的实例。
+         */
+        public static class ReusableBuilder {
+            private String name;
+            private int age;
+            private int calories;
+            private int fat;
+            private int protein;
+            private int vitamins;
+            private UnaryOperator<AnimalNutrition> canonicalizer = UnaryOperator.identity();   // reset() 不清除
+            
+            // 重置为新对象的初始状态，可选参数回到默认值
+            public ReusableBuilder reset(String name, int age) {
+                this.name = name;
+                this.age = age;
+                calories = 0;
+                fat = 0;
+                protein = 0;
+                vitamins = 0;
+                return this;
+            }
+            
+            public ReusableBuilder calories(int val) {
+                calories = val;
+                return this;
+            }
+            
+            public ReusableBuilder fat(int val) {
+                fat = val;
+                return this;
+            }
+            
+            public ReusableBuilder protein(int val) {
+                protein = val;
+                return this;
+            }
+            
+            public ReusableBuilder vitamins(int val) {
+                vitamins = val;
+                return this;
+            }
+            
+            // 与 Builder.canonical() 相同；这是构建器的模式而不是记录的字段，所以 reset() 后仍然有效
+            public ReusableBuilder canonical(UnaryOperator<AnimalNutrition> canonicalizer) {
+                this.canonicalizer = Objects.requireNonNull(canonicalizer);
+                return this;
+            }
+            
+            public AnimalNutrition build() {
+                return canonicalizer.apply(new AnimalNutrition(name, age, calories, fat, protein, vitamins));
             }
         }
         
         private AnimalNutrition(Builder builder) {
-            name = builder.name;
-            age = builder.age;
-            calories = builder.calories;
-            fat = builder.fat;
-            protein = builder.protein;
-            vitamins = builder.vitamins;
+            this(builder.name, builder.age, builder.calories, builder.fat, builder.protein, builder.vitamins);
+        }
+        
+        private AnimalNutrition(String name, int age, int calories, int fat, int protein, int vitamins) {
+            this.name = name;
+            this.age = age;
+            this.calories = calories;
+            this.fat = fat;
+            this.protein = protein;
+            this.vitamins = vitamins;
+        }
+        
+        /**
+         * 批量工厂：直接从并列的列数组创建，不为每条记录创建构建器
+         */
+        public static AnimalNutrition[] fromColumns(String[] names, int[] ages, int[] calories,
+                                                    int[] fat, int[] protein, int[] vitamins) {
+            requireSameLength(names, ages, calories, fat, protein, vitamins);
+            int n = names.length;
+            AnimalNutrition[] result = new AnimalNutrition[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = new AnimalNutrition(names[i], ages[i], calories[i], fat[i], protein[i], vitamins[i]);
+            }
+            return result;
+        }
+        
+        static void requireSameLength(String[] names, int[]... columns) {
+            for (int[] column : columns) {
+                if (column.length != names.length) {
+                    throw new IllegalArgumentException("各列长度不一致");
+                }
+            }
+        }
+        
+        public String name() { return name; }
+        
+        public int age() { return age; }
+        
+        public int calories() { return calories; }
+        
+        public int fat() { return fat; }
+        
+        public int protein() { return protein; }
+        
+        public int vitamins() { return vitamins; }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof AnimalNutrition)) return false;
+            AnimalNutrition other = (AnimalNutrition) o;
+            return age == other.age && calories == other.calories && fat == other.fat
+                    && protein == other.protein && vitamins == other.vitamins && Objects.equals(name, other.name);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, age, calories, fat, protein, vitamins);
         }
         
         @Override
@@ -0,0 +1,330 @@
+package chapter2.item2;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.*;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：编译期生成层次化 Builder 和映射器（注解处理器）
+ *
+ * Item2_HierarchicalBuilder 手写了递归泛型的 Builder&lt;T extends Builder&lt;T&gt;&gt;，
+ * 映射层再用反射把 Map / 行数据填进这些对象，既啰嗦又慢。给类加上 @GenerateBuilder 后，
+ * 这个处理器在编译期生成：
+ * 1. XxxBuilder：抽象类生成带 self() 的泛型构建器，子类的构建器继承父类的构建器
+ * 2. XxxMapper：从 Map 或按列顺序的 Object[] 直接调用构建器创建对象，没有反射
+ * 3. META-INF/services 索引，运行时用 RowMapper.find() 通过 ServiceLoader 找到映射器
+ *
+ * 注解处理器不能给已有的类添加成员，所以非抽象类需要自己提供一个"按字段顺序接收全部字段"
+ * 的非 private 构造器（父类字段在前），生成的 build() 直接调用它；缺少时编译报错并给出签名。
+ *
+ * 使用方法（先编译处理器，再带处理器编译）：
+ * <pre>
+ * javac -d out chapter2/item2/Item2_BuilderProcessor.java
+ * javac -cp out -sourcepath . -implicit:class -processorpath out -processor chapter2.item2.Item2_BuilderProcessor \
+ *       -s generated -d out chapter2/item2/*.java
+ * </pre>
+ *
+ * @author CN-JeffreyZhou
+ */
+@SupportedAnnotationTypes("chapter2.item2.Item2_BuilderProcessor.GenerateBuilder")
+public class Item2_BuilderProcessor extends AbstractProcessor {
+
+    /**
+     * 为该类生成 Builder（以及非抽象类的 Mapper）
+     */
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.TYPE)
+    public @interface GenerateBuilder {
+    }
+
+    /**
+     * 生成的映射器实现的接口：把一行数据变成对象
+     */
+    public interface RowMapper<T> {
+        Class<T> type();
+
+        // 列名即字段名，顺序与构造器参数一致（父类字段在前）
+        String[] columns();
+
+        T fromMap(Map<String, ?> row);
+
+        T fromRow(Object[] row);
+
+        /**
+         * 查找某个类型生成的映射器；没有用处理器编译时返回 empty
+         */
+        @SuppressWarnings("unchecked")
+        static <T> Optional<RowMapper<T>> find(Class<T> type) {
+            return Optional.ofNullable((RowMapper<T>) Registry.MAPPERS.get(type));
+        }
+
+        // 生成代码使用的类型转换，null 转为默认值
+        static long asLong(Object v) {
+            return v == null ? 0 : ((Number) v).longValue();
+        }
+
+        static double asDouble(Object v) {
+            return v == null ? 0 : ((Number) v).doubleValue();
+        }
+
+        static boolean asBoolean(Object v) {
+            return v != null && (Boolean) v;
+        }
+    }
+
+    // ServiceLoader 只在第一次 find() 时读取索引（延迟初始化持有者类）
+    private static final class Registry {
+        static final Map<Class<?>, RowMapper<?>> MAPPERS = load();
+
+        private static Map<Class<?>, RowMapper<?>> load() {
+            Map<Class<?>, RowMapper<?>> mappers = new HashMap<>();
+            for (RowMapper<?> mapper : ServiceLoader.load(RowMapper.class)) {
+                mappers.put(mapper.type(), mapper);
+            }
+            return mappers;
+        }
+    }
+
+    private static final String GENERATED = "@javax.annotation.processing.Generated(\"chapter2.item2.Item2_BuilderProcessor\")";
+    private static final String SERVICE_FILE = "META-INF/services/chapter2.item2.Item2_BuilderProcessor$RowMapper";
+
+    private final List<String> mappers = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateBuilder.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@GenerateBuilder 只能用于类");
+                continue;
+            }
+            try {
+                generate((TypeElement) element);
+            } catch (IOException e) {
+                error(element, "生成代码失败: " + e.getMessage());
+            }
+        }
+        if (roundEnv.processingOver() && !mappers.isEmpty()) {
+            writeServiceFile();
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        boolean isAbstract = type.getModifiers().contains(Modifier.ABSTRACT);
+        TypeElement parent = annotatedSuperclass(type);
+        if (parent != null && !parent.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "带 @GenerateBuilder 的父类必须是抽象类: " + parent.getQualifiedName());
+            return;
+        }
+        List<VariableElement> allFields = instanceFields(type);
+        // 父类有生成的构建器时只声明自己的字段，否则声明整条继承链上的字段
+        List<VariableElement> builderFields = parent != null ? ownFields(type) : allFields;
+
+        if (!isAbstract && !hasCanonicalConstructor(type, allFields)) {
+            error(type, "需要一个非 private 的构造器: " + type.getSimpleName() + "(" + signature(allFields) + ")");
+            return;
+        }
+
+        String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String builder = flatName(type) + "Builder";
+        String self = isAbstract ? "T" : builder;
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(pkg).append(";\n\n");
+        src.append("/** 由 Item2_BuilderProcessor 根据 ").append(type.getSimpleName()).append(" 生成，请勿手工修改 */\n");
+        src.append(GENERATED).append('\n');
+        if (isAbstract) {
+            src.append("public abstract class ").append(builder).append("<T extends ").append(builder).append("<T>>");
+        } else {
+            src.append("public class ").append(builder);
+        }
+        if (parent != null) {
+            src.append(" extends ").append(flatName(parent)).append("Builder<").append(self).append('>');
+        }
+        src.append(" {\n");
+        for (VariableElement f : builderFields) {
+            src.append("    ").append(f.asType()).append(' ').append(f.getSimpleName()).append(";\n");
+        }
+        for (VariableElement f : builderFields) {
+            src.append("\n    public ").append(self).append(' ').append(f.getSimpleName())
+                    .append('(').append(f.asType()).append(" val) {\n")
+                    .append("        this.").append(f.getSimpleName()).append(" = val;\n")
+                    .append("        return ").append(isAbstract ? "self()" : "this").append(";\n    }\n");
+        }
+        if (isAbstract) {
+            src.append("\n    protected abstract T self();\n");
+            src.append("\n    public abstract ").append(type.getQualifiedName()).append(" build();\n");
+        } else {
+            if (parent != null) {
+                src.append("\n    @Override\n    protected ").append(builder).append(" self() {\n        return this;\n    }\n");
+            }
+            src.append("\n    public ").append(type.getQualifiedName()).append(" build() {\n")
+                    .append("        return new ").append(type.getQualifiedName()).append('(');
+            for (int i = 0; i < allFields.size(); i++) {
+                src.append(i == 0 ? "" : ", ").append(allFields.get(i).getSimpleName());
+            }
+            src.append(");\n    }\n");
+        }
+        src.append("}\n");
+        write(pkg, builder, src, type);
+
+        if (!isAbstract) {
+            generateMapper(type, pkg, builder, allFields);
+        }
+    }
+
+    private void generateMapper(TypeElement type, String pkg, String builder, List<VariableElement> fields)
+            throws IOException {
+        String mapper = flatName(type) + "Mapper";
+        String target = type.getQualifiedName().toString();
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(pkg).append(";\n\n");
+        src.append("import chapter2.item2.Item2_BuilderProcessor.RowMapper;\n\n");
+        src.append("/** 由 Item2_BuilderProcessor 根据 ").append(type.getSimpleName()).append(" 生成，请勿手工修改 */\n");
+        src.append(GENERATED).append('\n');
+        src.append("public final class ").append(mapper).append(" implements RowMapper<").append(target).append("> {\n");
+        src.append("    private static final String[] COLUMNS = {");
+        for (int i = 0; i < fields.size(); i++) {
+            src.append(i == 0 ? "" : ", ").append('"').append(fields.get(i).getSimpleName()).append('"');
+        }
+        src.append("};\n\n");
+        src.append("    @Override\n    public Class<").append(target).append("> type() {\n")
+                .append("        return ").append(target).append(".class;\n    }\n\n");
+        src.append("    @Override\n    public String[] columns() {\n        return COLUMNS.clone();\n    }\n\n");
+
+        src.append("    @Override\n    public ").append(target).append(" fromMap(java.util.Map<String, ?> row) {\n");
+        src.append("        return new ").append(builder).append("()");
+        for (VariableElement f : fields) {
+            src.append("\n                .").append(f.getSimpleName()).append('(')
+                    .append(convert(f.asType(), "row.get(\"" + f.getSimpleName() + "\")")).append(')');
+        }
+        src.append("\n                .build();\n    }\n\n");
+
+        src.append("    @Override\n    public ").append(target).append(" fromRow(Object[] row) {\n");
+        src.append("        return new ").append(builder).append("()");
+        for (int i = 0; i < fields.size(); i++) {
+            VariableElement f = fields.get(i);
+            src.append("\n                .").append(f.getSimpleName()).append('(')
+                    .append(convert(f.asType(), "row[" + i + "]")).append(')');
+        }
+        src.append("\n                .build();\n    }\n}\n");
+        write(pkg, mapper, src, type);
+        mappers.add(pkg + "." + mapper);
+    }
+
+    // Object -> 字段类型的转换表达式
+    private String convert(TypeMirror type, String expr) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "RowMapper.asBoolean(" + expr + ")";
+            case LONG:
+                return "RowMapper.asLong(" + expr + ")";
+            case INT: case SHORT: case BYTE: case CHAR:
+                return "(" + type + ") RowMapper.asLong(" + expr + ")";
+            case DOUBLE:
+                return "RowMapper.asDouble(" + expr + ")";
+            case FLOAT:
+                return "(float) RowMapper.asDouble(" + expr + ")";
+            default:
+                return "(" + processingEnv.getTypeUtils().erasure(type) + ") " + expr;
+        }
+    }
+
+    private TypeElement annotatedSuperclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) return null;
+        TypeElement parent = (TypeElement) processingEnv.getTypeUtils().asElement(superclass);
+        return parent.getAnnotation(GenerateBuilder.class) != null ? parent : null;
+    }
+
+    private static List<VariableElement> ownFields(TypeElement type) {
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement f : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (!f.getModifiers().contains(Modifier.STATIC)) fields.add(f);
+        }
+        return fields;
+    }
+
+    // 整条继承链上的实例字段，父类在前
+    private List<VariableElement> instanceFields(TypeElement type) {
+        Deque<TypeElement> chain = new ArrayDeque<>();
+        for (TypeElement t = type; t != null; ) {
+            chain.push(t);
+            TypeMirror superclass = t.getSuperclass();
+            t = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) processingEnv.getTypeUtils().asElement(superclass) : null;
+        }
+        List<VariableElement> fields = new ArrayList<>();
+        for (TypeElement t : chain) fields.addAll(ownFields(t));
+        return fields;
+    }
+
+    private boolean hasCanonicalConstructor(TypeElement type, List<VariableElement> fields) {
+        for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (c.getModifiers().contains(Modifier.PRIVATE) || c.getParameters().size() != fields.size()) continue;
+            boolean matches = true;
+            for (int i = 0; i < fields.size() && matches; i++) {
+                matches = processingEnv.getTypeUtils().isSameType(c.getParameters().get(i).asType(), fields.get(i).asType());
+            }
+            if (matches) return true;
+        }
+        return false;
+    }
+
+    private static String signature(List<VariableElement> fields) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (VariableElement f : fields) joiner.add(f.asType() + " " + f.getSimpleName());
+        return joiner.toString();
+    }
+
+    // 嵌套类展平成顶层类名：Item2_HierarchicalBuilder.Dog -> Item2_HierarchicalBuilder_Dog
+    private static String flatName(TypeElement type) {
+        String name = type.getSimpleName().toString();
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            name = e.getSimpleName() + "_" + name;
+        }
+        return name;
+    }
+
+    private void write(String pkg, String simpleName, CharSequence src, TypeElement origin) throws IOException {
+        try (Writer out = processingEnv.getFiler().createSourceFile(pkg + "." + simpleName, origin).openWriter()) {
+            out.write(src.toString());
+        }
+    }
+
+    private void writeServiceFile() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer out = file.openWriter()) {
+                for (String mapper : mappers) out.write(mapper + "\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "写入 " + SERVICE_FILE + " 失败: " + e);
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
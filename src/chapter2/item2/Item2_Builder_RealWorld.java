@@ -1,5 +1,10 @@
 package chapter2.item2;
 
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
 /**
  * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
  * 
@@ -18,6 +23,10 @@ public class Item2_Builder_RealWorld {
         private final int timeout;             // 可选
         private final int retryCount;          // 可选
         private final boolean followRedirects; // 可选
+        private final RetryPolicy retryPolicy; // 可选
+        
+        // HTTP/1.1 报文的缓存（延迟计算）。对象不可变，多线程重复计算结果相同，单检查即可（第83条）
+        private volatile ByteBuffer wireFormat;
         
         public static class Builder {
             // 必需参数
@@ -29,6 +38,7 @@ public class Item2_Builder_RealWorld {
             private int timeout = 30000;
             private int retryCount = 0;
             private boolean followRedirects = true;
+            private RetryPolicy retryPolicy = RetryPolicy.IMMEDIATE;
             
             public Builder(String url, String method) {
                 this.url = url;
@@ -55,7 +65,25 @@ public class Item2_Builder_RealWorld {
                 return this;
             }
             
+            // retryCount 决定重试几次，retryPolicy 决定每次重试前等多久、是否对冲
+            public Builder retryPolicy(RetryPolicy val) {
+                retryPolicy = val;
+                return this;
+            }
+            
             public HttpRequest build() {
+                // java.net.http 不接受非正的超时，在这里拒绝，而不是等到发送时才失败
+                if (timeout <= 0) {
+                    throw new IllegalArgumentException("超时必须大于 0: " + timeout);
+                }
+                if (retryCount < 0) {
+                    throw new IllegalArgumentException("重试次数不能为负: " + retryCount);
+                }
+                // 请求会被编码、比较、当作 Map 的键，null 字段应在构建时失败，而不是等到发送时
+                Objects.requireNonNull(url, "url 不能为 null");
+                Objects.requireNonNull(method, "method 不能为 null");
+                Objects.requireNonNull(body, "body 不能为 null，没有请求体时使用空字符串");
+                Objects.requireNonNull(retryPolicy, "retryPolicy 不能为 null");
                 return new HttpRequest(this);
             }
         }
@@ -67,6 +95,70 @@ public class Item2_Builder_RealWorld {
             timeout = builder.timeout;
             retryCount = builder.retryCount;
             followRedirects = builder.followRedirects;
+            retryPolicy = builder.retryPolicy;
+        }
+        
+        public String url() { return url; }
+        
+        public String method() { return method; }
+        
+        public String body() { return body; }
+        
+        public int timeout() { return timeout; }
+        
+        public int retryCount() { return retryCount; }
+        
+        public boolean followRedirects() { return followRedirects; }
+        
+        public RetryPolicy retryPolicy() { return retryPolicy; }
+        
+        /**
+         * HTTP/1.1 编码后的报文（请求行、Host、Content-Length、请求体）
+         * 
+         * 第一次调用时编码并缓存在直接缓冲区中，之后每次发送或重试只返回一个只读副本，
+         * 各自有独立的 position，可以直接交给 SocketChannel.write()，不再复制或重新编码。
+         */
+        public ByteBuffer wireFormat() {
+            ByteBuffer result = wireFormat;
+            if (result == null) {
+                ByteBuffer encoded = encodeHttp11();
+                result = ByteBuffer.allocateDirect(encoded.remaining()).put(encoded).flip().asReadOnlyBuffer();
+                wireFormat = result;
+            }
+            return result.duplicate();
+        }
+        
+        // 编码到普通的堆缓冲区，不缓存
+        ByteBuffer encodeHttp11() {
+            URI uri = URI.create(url);
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            if (uri.getRawQuery() != null) path += "?" + uri.getRawQuery();
+            String host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+            byte[] content = body.getBytes(StandardCharsets.UTF_8);
+            byte[] head = (method + " " + path + " HTTP/1.1\r\n"
+                    + "Host: " + host + "\r\n"
+                    + "Content-Length: " + content.length + "\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII);
+            return ByteBuffer.allocate(head.length + content.length).put(head).put(content).flip();
+        }
+        
+        /**
+         * 相等只看会改变响应内容的字段：方法、URL、请求体、是否跟随重定向
+         * （不跟随时拿到的是 3xx 本身，跟随时是最终的 200，两者不能互相替代）。
+         * timeout、重试等执行参数只影响能否、何时拿到响应，不参与比较，因此这样的请求可以合并执行。
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof HttpRequest)) return false;
+            HttpRequest other = (HttpRequest) o;
+            return followRedirects == other.followRedirects && method.equals(other.method)
+                    && url.equals(other.url) && body.equals(other.body);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(method, url, body, followRedirects);
         }
         
         @Override
@@ -76,6 +168,108 @@ public class Item2_Builder_RealWorld {
         }
     }
     
+    /**
+     * 重试策略：指数退避 + 随机抖动，可选对冲请求
+     * 
+     * 本身也是用 Builder 构建的不可变对象，可以在多个请求之间共享。
+     */
+    static class RetryPolicy {
+        // 默认策略：立即重试、不对冲（与只有 retryCount 时的行为一致）
+        static final RetryPolicy IMMEDIATE = new RetryPolicy.Builder().baseDelay(0).build();
+        
+        private final long baseDelayMillis;
+        private final long maxDelayMillis;
+        private final double multiplier;
+        private final boolean jitter;
+        private final double hedgePercentile;   // 0 表示不对冲
+        private final long minHedgeDelayMillis;
+        
+        public static class Builder {
+            private long baseDelayMillis = 100;
+            private long maxDelayMillis = 10_000;
+            private double multiplier = 2.0;
+            private boolean jitter = true;
+            private double hedgePercentile = 0;
+            private long minHedgeDelayMillis = 1;
+            
+            public Builder baseDelay(long millis) {
+                baseDelayMillis = millis;
+                return this;
+            }
+            
+            public Builder maxDelay(long millis) {
+                maxDelayMillis = millis;
+                return this;
+            }
+            
+            public Builder multiplier(double val) {
+                multiplier = val;
+                return this;
+            }
+            
+            // 全抖动：在 [0, 退避上限] 中均匀取值，避免大量客户端同时重试
+            public Builder jitter(boolean val) {
+                jitter = val;
+                return this;
+            }
+            
+            // 第一次尝试超过该主机近期延迟的这个百分位仍未返回时，再发一次，取先返回者
+            public Builder hedgeAtPercentile(double val) {
+                hedgePercentile = val;
+                return this;
+            }
+            
+            public Builder minHedgeDelay(long millis) {
+                minHedgeDelayMillis = millis;
+                return this;
+            }
+            
+            public RetryPolicy build() {
+                if (baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis) {
+                    throw new IllegalArgumentException("退避时间无效: base=" + baseDelayMillis + ", max=" + maxDelayMillis);
+                }
+                if (multiplier < 1) {
+                    throw new IllegalArgumentException("退避倍数不能小于 1: " + multiplier);
+                }
+                if (hedgePercentile < 0 || hedgePercentile >= 1) {
+                    throw new IllegalArgumentException("对冲百分位应在 [0, 1) 之间: " + hedgePercentile);
+                }
+                return new RetryPolicy(this);
+            }
+        }
+        
+        private RetryPolicy(Builder builder) {
+            baseDelayMillis = builder.baseDelayMillis;
+            maxDelayMillis = builder.maxDelayMillis;
+            multiplier = builder.multiplier;
+            jitter = builder.jitter;
+            hedgePercentile = builder.hedgePercentile;
+            minHedgeDelayMillis = builder.minHedgeDelayMillis;
+        }
+        
+        /**
+         * 第 retry 次重试（从 0 开始）之前的等待时间
+         */
+        public long backoffMillis(int retry) {
+            double cap = Math.min(maxDelayMillis, baseDelayMillis * Math.pow(multiplier, retry));
+            long bound = (long) cap;
+            return jitter && bound > 0 ? java.util.concurrent.ThreadLocalRandom.current().nextLong(bound + 1) : bound;
+        }
+        
+        public boolean hedging() { return hedgePercentile > 0; }
+        
+        public double hedgePercentile() { return hedgePercentile; }
+        
+        public long minHedgeDelayMillis() { return minHedgeDelayMillis; }
+        
+        @Override
+        public String toString() {
+            return String.format("RetryPolicy[backoff=%d~%dms x%.1f, jitter=%s, hedge=%s]",
+                    baseDelayMillis, maxDelayMillis, multiplier, jitter,
+                    hedging() ? "p" + Math.round(hedgePercentile * 100) : "off");
+        }
+    }
+    
     public static void main(String[] args) {
         // 场景1：简单的 GET 请求
         HttpRequest getRequest = new HttpRequest.Builder("https://api.example.com/users", "GET")
@@ -0,0 +1,213 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_Builder.AnimalNutrition;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static chapter2.Benchmarks.allocatedBytes;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：构建器复用与按列批量构建
+ *
+ * README 中提到 Builder 的劣势之一是"创建对象前必须先创建 Builder"。
+ * 每分钟导入上百万条营养记录时，这些只用一次的构建器全是垃圾。三种做法：
+ * 1. 复用构建器：每个线程持有一个 ReusableBuilder，每条记录前 reset()
+ * 2. 批量工厂：AnimalNutrition.fromColumns() 直接从并列数组创建，不经过构建器
+ * 3. 享元视图：NutritionView 只是列数组上的一个游标，读取字段时连对象都不创建
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_BulkNutrition {
+
+    /**
+     * 并列的列数组：导入时通常就是这种形状（CSV 列、数据库结果集的列）
+     */
+    static final class NutritionColumns {
+        final String[] names;
+        final int[] ages;
+        final int[] calories;
+        final int[] fat;
+        final int[] protein;
+        final int[] vitamins;
+
+        NutritionColumns(String[] names, int[] ages, int[] calories, int[] fat, int[] protein, int[] vitamins) {
+            AnimalNutrition.requireSameLength(names, ages, calories, fat, protein, vitamins);
+            this.names = names;
+            this.ages = ages;
+            this.calories = calories;
+            this.fat = fat;
+            this.protein = protein;
+            this.vitamins = vitamins;
+        }
+
+        int size() { return names.length; }
+
+        AnimalNutrition[] toObjects() {
+            return AnimalNutrition.fromColumns(names, ages, calories, fat, protein, vitamins);
+        }
+
+        NutritionView view() {
+            return new NutritionView(this);
+        }
+    }
+
+    /**
+     * 享元视图：一个可移动的游标，字段直接从列数组读取
+     *
+     * 视图是可变的，只在当前线程的一次遍历中使用；需要长期保存时调用 toNutrition()。
+     */
+    static final class NutritionView {
+        private final NutritionColumns columns;
+        private int row;
+
+        private NutritionView(NutritionColumns columns) {
+            this.columns = columns;
+        }
+
+        NutritionView moveTo(int row) {
+            if (row < 0 || row >= columns.size()) throw new IndexOutOfBoundsException("行号越界: " + row);
+            this.row = row;
+            return this;
+        }
+
+        String name() { return columns.names[row]; }
+
+        int age() { return columns.ages[row]; }
+
+        int calories() { return columns.calories[row]; }
+
+        int fat() { return columns.fat[row]; }
+
+        int protein() { return columns.protein[row]; }
+
+        int vitamins() { return columns.vitamins[row]; }
+
+        // 物化为不可变对象
+        AnimalNutrition toNutrition(AnimalNutrition.ReusableBuilder reusable) {
+            return reusable.reset(name(), age())
+                    .calories(calories())
+                    .fat(fat())
+                    .protein(protein())
+                    .vitamins(vitamins())
+                    .build();
+        }
+    }
+
+    // ==================== 三种导入方式 ====================
+
+    static long importWithNewBuilders(NutritionColumns c, AnimalNutrition[] out) {
+        long sum = 0;
+        for (int i = 0; i < c.size(); i++) {
+            out[i] = new AnimalNutrition.Builder(c.names[i], c.ages[i])
+                    .calories(c.calories[i])
+                    .fat(c.fat[i])
+                    .protein(c.protein[i])
+                    .vitamins(c.vitamins[i])
+                    .build();
+            sum += out[i].calories();
+        }
+        return sum;
+    }
+
+    static long importWithReusedBuilder(NutritionColumns c, AnimalNutrition[] out) {
+        AnimalNutrition.ReusableBuilder builder = new AnimalNutrition.ReusableBuilder();
+        long sum = 0;
+        for (int i = 0; i < c.size(); i++) {
+            out[i] = builder.reset(c.names[i], c.ages[i])
+                    .calories(c.calories[i])
+                    .fat(c.fat[i])
+                    .protein(c.protein[i])
+                    .vitamins(c.vitamins[i])
+                    .build();
+            sum += out[i].calories();
+        }
+        return sum;
+    }
+
+    static long importWithBulkFactory(NutritionColumns c) {
+        long sum = 0;
+        for (AnimalNutrition x : c.toObjects()) {
+            sum += x.calories();
+        }
+        return sum;
+    }
+
+    static long scanWithView(NutritionColumns c) {
+        NutritionView view = c.view();
+        long sum = 0;
+        for (int i = 0; i < c.size(); i++) {
+            sum += view.moveTo(i).calories();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) {
+        AnimalNutrition.ReusableBuilder builder = new AnimalNutrition.ReusableBuilder();
+        AnimalNutrition dog = builder.reset("狗", 3).calories(500).protein(30).build();
+        AnimalNutrition cat = builder.reset("猫", 2).vitamins(15).build();
+        System.out.println("复用同一个构建器：");
+        System.out.println("  " + dog);
+        System.out.println("  " + cat + "（reset 后可选参数回到默认值）");
+
+        int n = 2_000_000;
+        String[] kinds = {"狗", "猫", "兔", "鸟"};
+        Random random = new Random(5);
+        String[] names = new String[n];
+        int[] ages = new int[n], calories = new int[n], fat = new int[n], protein = new int[n], vitamins = new int[n];
+        for (int i = 0; i < n; i++) {
+            names[i] = kinds[random.nextInt(kinds.length)];
+            ages[i] = random.nextInt(15);
+            calories[i] = 100 + random.nextInt(900);
+            fat[i] = random.nextInt(50);
+            protein[i] = random.nextInt(60);
+            vitamins[i] = random.nextInt(30);
+        }
+        NutritionColumns columns = new NutritionColumns(names, ages, calories, fat, protein, vitamins);
+        System.out.println("\n享元视图读取第 0 行: " + columns.view().moveTo(0).toNutrition(builder));
+
+        AnimalNutrition[] out = new AnimalNutrition[n];   // 结果逃逸，避免分配被 JIT 消除
+        long[] time = new long[4], bytes = new long[4], sums = new long[4];
+        Arrays.fill(time, Long.MAX_VALUE);   // 取各轮最短时间，减少 GC 干扰
+        for (int round = 0; round < 5; round++) {   // 前几轮用于预热
+            System.gc();   // 每种做法开始前清理上一种留下的对象，避免替它付 GC 成本
+            long b = allocatedBytes(), t = System.nanoTime();
+            sums[0] = importWithNewBuilders(columns, out);
+            time[0] = Math.min(time[0], System.nanoTime() - t); bytes[0] = allocatedBytes() - b;
+
+            System.gc();
+            b = allocatedBytes(); t = System.nanoTime();
+            sums[1] = importWithReusedBuilder(columns, out);
+            time[1] = Math.min(time[1], System.nanoTime() - t); bytes[1] = allocatedBytes() - b;
+
+            System.gc();
+            b = allocatedBytes(); t = System.nanoTime();
+            sums[2] = importWithBulkFactory(columns);
+            time[2] = Math.min(time[2], System.nanoTime() - t); bytes[2] = allocatedBytes() - b;
+
+            System.gc();
+            b = allocatedBytes(); t = System.nanoTime();
+            sums[3] = scanWithView(columns);
+            time[3] = Math.min(time[3], System.nanoTime() - t); bytes[3] = allocatedBytes() - b;
+        }
+
+        String[] labels = {"每条记录 new Builder", "复用构建器 + reset", "fromColumns 批量工厂", "享元视图（不建对象）"};
+        System.out.printf("%n导入 %,d 条记录：%n", n);
+        for (int i = 0; i < labels.length; i++) {
+            System.out.printf("%4d ms  %,13d 字节  %s%n", time[i] / 1_000_000, bytes[i], labels[i]);
+        }
+        // 结论取决于本次测量：构建器本身约 40 字节，差值小于一个构建器说明分配被逃逸分析消除了
+        long extraPerRecord = (bytes[0] - bytes[1]) / n;
+        if (extraPerRecord < 16) {
+            System.out.println("（本次运行中 JIT 的逃逸分析消除了 new Builder 的分配；构建器跨方法传递、"
+                    + "调用链没有内联时就做不到，可以用 -XX:-DoEscapeAnalysis 观察）");
+        } else {
+            System.out.printf("（每条记录 new Builder 多分配约 %d 字节，就是用完即弃的构建器本身）%n", extraPerRecord);
+        }
+        System.out.println("结果一致: " + (sums[0] == sums[1] && sums[1] == sums[2] && sums[2] == sums[3]));
+
+        System.out.println("\n关键：构建器只服务于可读性，热路径上可以复用它，或者干脆绕过它");
+    }
+}
@@ -0,0 +1,166 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_Builder.AnimalNutrition;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：规范化构建（hash-consing）
+ *
+ * 几百种营养配置覆盖了上百万只动物，构建出的 AnimalNutrition 绝大多数是重复的。
+ * 对象不可变、并且正确实现了 equals/hashCode，就可以让字段相同的对象共享同一个实例：
+ * 1. 构建器的规范化模式：builder.canonical(NUTRITION::intern) 之后，build() 直接返回
+ *    字段相同的规范实例；构建器只接收一个函数，不依赖这里的 CanonicalTable
+ * 2. CanonicalTable 是并发的弱引用表：只要还有人引用规范实例，它就留在表里；
+ *    没人引用后被 GC 回收，表项随后清理，表不会无限增长
+ * 3. 统计去重比例（命中次数 / 请求次数）
+ *
+ * 与 String.intern() 同理；不同的是这张表是普通 Java 对象，可以统计、可以有多张。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_CanonicalNutrition {
+
+    /**
+     * 并发弱引用规范表：键和值是同一个弱引用，不会让规范实例常驻内存
+     */
+    static final class CanonicalTable<T> {
+        private final ConcurrentHashMap<WeakKey<T>, WeakKey<T>> map = new ConcurrentHashMap<>();
+        private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+
+        private static final class WeakKey<T> extends WeakReference<T> {
+            private final int hash;   // 引用被清除后仍要能从 map 中删除，所以先记下哈希值
+
+            WeakKey(T referent, ReferenceQueue<T> queue) {
+                super(referent, queue);
+                hash = referent.hashCode();
+            }
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+
+            // 已被清除的键只等于自己，不会被查找命中
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof WeakKey)) return false;
+                Object mine = get();
+                return mine != null && mine.equals(((WeakKey<?>) o).get());
+            }
+        }
+
+        /**
+         * 返回与 candidate 相等的规范实例；表中没有时 candidate 成为规范实例
+         */
+        T intern(T candidate) {
+            requests.increment();
+            expungeStaleEntries();
+            WeakKey<T> key = new WeakKey<>(candidate, queue);
+            while (true) {
+                WeakKey<T> existing = map.putIfAbsent(key, key);
+                if (existing == null) return candidate;
+                T canonical = existing.get();
+                if (canonical != null) {
+                    hits.increment();
+                    return canonical;
+                }
+                map.remove(existing, existing);   // 查到之后恰好被回收，删掉重试
+            }
+        }
+
+        private void expungeStaleEntries() {
+            Object stale;
+            while ((stale = queue.poll()) != null) {
+                map.remove(stale);
+            }
+        }
+
+        int size() {
+            expungeStaleEntries();
+            return map.size();
+        }
+
+        long requests() { return requests.sum(); }
+
+        // 去重比例：命中已有规范实例的请求占比
+        double dedupRatio() {
+            long r = requests.sum();
+            return r == 0 ? 0 : hits.sum() / (double) r;
+        }
+    }
+
+    // AnimalNutrition 的规范表
+    static final CanonicalTable<AnimalNutrition> NUTRITION = new CanonicalTable<>();
+
+    private static long usedHeapAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static AnimalNutrition[] buildAll(int n, int profiles, boolean canonical) {
+        String[] kinds = {"狗", "猫", "兔", "鸟", "鱼"};
+        Random random = new Random(9);
+        AnimalNutrition.ReusableBuilder builder = new AnimalNutrition.ReusableBuilder();
+        if (canonical) builder.canonical(NUTRITION::intern);
+        AnimalNutrition[] result = new AnimalNutrition[n];
+        for (int i = 0; i < n; i++) {
+            int p = random.nextInt(profiles);   // 每种配置由编号确定全部字段
+            result[i] = builder.reset(kinds[p % kinds.length], p % 15)
+                    .calories(100 + p)
+                    .fat(p % 40)
+                    .protein(p % 60)
+                    .vitamins(p % 25)
+                    .build();
+        }
+        return result;
+    }
+
+    public static void main(String[] args) {
+        AnimalNutrition a = new AnimalNutrition.Builder("狗", 3).calories(500).canonical(NUTRITION::intern).build();
+        AnimalNutrition b = new AnimalNutrition.Builder("狗", 3).calories(500).canonical(NUTRITION::intern).build();
+        AnimalNutrition c = new AnimalNutrition.Builder("狗", 3).calories(500).build();
+        System.out.println("规范实例 a == b: " + (a == b) + "，普通构建 a == c: " + (a == c) + "，a.equals(c): " + a.equals(c));
+
+        int n = 1_000_000, profiles = 300;
+        long base = usedHeapAfterGc();
+        AnimalNutrition[] plain = buildAll(n, profiles, false);
+        long plainHeap = usedHeapAfterGc() - base;
+        Reference.reachabilityFence(plain);   // 测量期间记录必须保持可达
+        plain = null;
+
+        base = usedHeapAfterGc();
+        long start = System.nanoTime();
+        AnimalNutrition[] shared = buildAll(n, profiles, true);
+        long canonicalTime = System.nanoTime() - start;
+        long sharedHeap = usedHeapAfterGc() - base;
+        Reference.reachabilityFence(shared);
+
+        CanonicalTable<AnimalNutrition> table = NUTRITION;
+        System.out.printf("%n%,d 条记录，%d 种营养配置：%n", n, profiles);
+        System.out.printf("普通构建   保留堆内存 %,12d 字节%n", plainHeap);
+        System.out.printf("规范化构建 保留堆内存 %,12d 字节（含 %d 个规范实例和弱引用表）%n", sharedHeap, table.size());
+        System.out.printf("去重比例 %.2f%%，规范化构建耗时 %d ms%n", table.dedupRatio() * 100, canonicalTime / 1_000_000);
+
+        System.out.println("\n释放所有记录后：");
+        shared = null;
+        a = b = null;
+        usedHeapAfterGc();
+        System.out.println("规范表剩余条目: " + table.size() + "（没人引用的规范实例已被回收）");
+
+        System.out.println("\n关键：不可变 + equals/hashCode，相同的值就可以只存一份");
+    }
+}
@@ -0,0 +1,105 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_BuilderProcessor.RowMapper;
+import chapter2.item2.Item2_HierarchicalBuilder.Dog;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：用生成的映射器代替反射填充对象
+ *
+ * Item2_HierarchicalBuilder 的 Animal / Dog / Bird 加上了 @GenerateBuilder，
+ * Item2_BuilderProcessor 在编译期为它们生成构建器和映射器。这里对比两种映射层：
+ * 1. 反射：按字段名组装参数，通过 Constructor.newInstance() 创建（每行查找 / 缓存查找结果）
+ * 2. 生成的映射器：普通的构建器调用，JIT 可以完全内联
+ *
+ * 需要带处理器编译才能看到生成的映射器（命令见 Item2_BuilderProcessor 的文档注释）；
+ * 未生成时只运行反射部分。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_GeneratedMapping {
+
+    /**
+     * 典型的反射映射：字段即列，按字段类型找到"全字段"构造器
+     */
+    static final class ReflectiveMapper<T> {
+        private final String[] columns;
+        private final Constructor<T> constructor;
+
+        ReflectiveMapper(Class<T> type) throws ReflectiveOperationException {
+            Deque<Class<?>> chain = new ArrayDeque<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) chain.push(c);
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c : chain) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(f.getModifiers())) fields.add(f);
+                }
+            }
+            columns = fields.stream().map(Field::getName).toArray(String[]::new);
+            constructor = type.getDeclaredConstructor(fields.stream().map(Field::getType).toArray(Class[]::new));
+            constructor.setAccessible(true);
+        }
+
+        T fromMap(Map<String, ?> row) throws ReflectiveOperationException {
+            Object[] args = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                args[i] = row.get(columns[i]);
+            }
+            return constructor.newInstance(args);
+        }
+    }
+
+    @FunctionalInterface
+    interface Mapping {
+        Dog map(int i) throws Exception;
+    }
+
+    private static double nanosPerRow(Mapping mapping, int n) throws Exception {
+        Dog[] sink = new Dog[1024];   // 让对象逃逸，避免分配被 JIT 消除
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                sink[i & 1023] = mapping.map(i);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / (double) n;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int n = 200_000;
+        String[] breeds = {"金毛", "柯基", "哈士奇", "柴犬"};
+        List<Map<String, Object>> maps = new ArrayList<>(n);
+        Object[][] rows = new Object[n][];
+        for (int i = 0; i < n; i++) {
+            maps.add(Map.of("name", "狗" + i, "age", i % 15, "breed", breeds[i % breeds.length]));
+            rows[i] = new Object[]{"狗" + i, i % 15, breeds[i % breeds.length]};
+        }
+
+        ReflectiveMapper<Dog> reflective = new ReflectiveMapper<>(Dog.class);
+        System.out.println("反射映射：" + reflective.fromMap(maps.get(0)));
+        Optional<RowMapper<Dog>> generated = RowMapper.find(Dog.class);
+        generated.ifPresentOrElse(
+                m -> System.out.println("生成的映射器：" + m.fromMap(maps.get(0)) + "（列: " + String.join(", ", m.columns()) + "）"),
+                () -> System.out.println("未找到生成的映射器：请按 Item2_BuilderProcessor 文档中的命令带处理器编译"));
+
+        System.out.printf("%n从 %,d 行数据创建 Dog：%n", n);
+        System.out.printf("反射（每行查找构造器）: %6.1f ns/行%n",
+                nanosPerRow(i -> new ReflectiveMapper<>(Dog.class).fromMap(maps.get(i)), n));
+        System.out.printf("反射（缓存 Constructor）: %6.1f ns/行%n", nanosPerRow(i -> reflective.fromMap(maps.get(i)), n));
+        if (generated.isPresent()) {
+            RowMapper<Dog> mapper = generated.get();
+            System.out.printf("生成的映射器（Map）:     %6.1f ns/行%n", nanosPerRow(i -> mapper.fromMap(maps.get(i)), n));
+            System.out.printf("生成的映射器（Object[]）: %6.1f ns/行%n", nanosPerRow(i -> mapper.fromRow(rows[i]), n));
+        }
+
+        System.out.println("\n关键：构建器的样板代码交给编译器生成，映射代码变成普通方法调用");
+    }
+}
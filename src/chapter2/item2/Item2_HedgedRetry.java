@@ -0,0 +1,113 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_Builder_RealWorld.HttpRequest;
+import chapter2.item2.Item2_Builder_RealWorld.RetryPolicy;
+import chapter2.item2.Item2_HttpEngine.HttpEngine;
+import chapter2.item2.Item2_HttpEngine.RetryBudget;
+import chapter2.item2.Item2_HttpEngine.StandInServer;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static chapter2.item2.Item2_HttpEngine.percentile;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：退避、重试预算与对冲请求
+ *
+ * HttpRequest.retryCount 只是一个整数，立即重试会让尾延迟更差，后端故障时还会放大流量。
+ * RetryPolicy 也用构建器配置，通过 HttpRequest.Builder.retryPolicy() 挂到请求上：
+ * 1. 指数退避 + 全抖动：第 n 次重试前等待 [0, min(max, base * 2^n)] 中的随机时间
+ * 2. 重试预算（RetryBudget，属于客户端）：重试和对冲的总量不超过请求量的一定比例
+ * 3. 对冲：第一次尝试超过近期延迟的某个百分位仍未返回时再发一次，先成功者胜出
+ *
+ * 演示使用本地"慢服务器"：5% 的请求要 100ms，其余立即返回。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_HedgedRetry {
+
+    // 闭环压测：保持 concurrency 个请求在途，返回排好序的延迟（纳秒）
+    static long[] run(HttpEngine engine, HttpRequest request, int n, int concurrency) throws InterruptedException {
+        long[] latencies = new long[n];
+        Semaphore outstanding = new Semaphore(concurrency);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[n];
+        for (int i = 0; i < n; i++) {
+            outstanding.acquire();
+            int index = i;
+            long sent = System.nanoTime();
+            futures[i] = engine.sendAsync(request).whenComplete((resp, e) -> {
+                latencies[index] = System.nanoTime() - sent;
+                outstanding.release();
+            });
+        }
+        CompletableFuture.allOf(futures).exceptionally(e -> null).join();
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    static void printDistribution(String label, long[] sorted) {
+        System.out.printf("%-14s p50 %6.1f ms  p90 %6.1f ms  p99 %6.1f ms  max %6.1f ms%n", label,
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.90) / 1e6,
+                percentile(sorted, 0.99) / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    public static void main(String[] args) throws Exception {
+        RetryPolicy backoff = new RetryPolicy.Builder().baseDelay(100).maxDelay(2000).jitter(false).build();
+        RetryPolicy jittered = new RetryPolicy.Builder().baseDelay(100).maxDelay(2000).build();
+        System.out.println(backoff);
+        System.out.print("退避（无抖动）: ");
+        for (int i = 0; i < 6; i++) System.out.print(backoff.backoffMillis(i) + "ms ");
+        System.out.print("\n退避（全抖动）: ");
+        for (int i = 0; i < 6; i++) System.out.print(jittered.backoffMillis(i) + "ms ");
+        System.out.println();
+
+        try (StandInServer server = new StandInServer()) {
+            server.handle("/tail", ex -> {
+                if (ThreadLocalRandom.current().nextInt(100) < 5) StandInServer.sleep(100);
+                StandInServer.reply(ex, 200, "ok");
+            });
+            server.handle("/down", ex -> StandInServer.reply(ex, 503, "维护中"));
+
+            // 场景1：尾延迟。对冲的代价是多发约 10% 的请求
+            int n = 2_000;
+            System.out.printf("%n%,d 个请求，8 个在途，5%% 的请求慢 100ms：%n", n);
+            HttpRequest plain = new HttpRequest.Builder(server.url("/tail"), "GET").build();
+            HttpRequest hedged = new HttpRequest.Builder(server.url("/tail"), "GET")
+                    .retryPolicy(new RetryPolicy.Builder().hedgeAtPercentile(0.90).minHedgeDelay(2).build())
+                    .build();
+            try (HttpEngine engine = new HttpEngine(8)) {
+                run(engine, plain, 500, 8);   // 预热，同时积累延迟样本
+                printDistribution("不对冲", run(engine, plain, n, 8));
+            }
+            try (HttpEngine engine = new HttpEngine(16, new RetryBudget(0.2, 20))) {
+                run(engine, plain, 500, 8);
+                long before = engine.hedges();
+                printDistribution("p90 时对冲", run(engine, hedged, n, 8));
+                System.out.printf("对冲请求 %,d 个（%.1f%%）%n", engine.hedges() - before,
+                        100.0 * (engine.hedges() - before) / n);
+            }
+
+            // 场景2：后端整体故障。没有预算时每个请求都重试满 3 次，流量放大 4 倍
+            System.out.printf("%n后端返回 503，%,d 个请求，每个最多重试 3 次：%n", 500);
+            HttpRequest failing = new HttpRequest.Builder(server.url("/down"), "GET")
+                    .retryCount(3)
+                    .retryPolicy(new RetryPolicy.Builder().baseDelay(1).maxDelay(20).build())
+                    .build();
+            for (boolean limited : new boolean[]{false, true}) {
+                RetryBudget budget = limited ? new RetryBudget(0.1, 10) : RetryBudget.unlimited();
+                try (HttpEngine engine = new HttpEngine(8, budget)) {
+                    int hitsBefore = server.hits.get();
+                    run(engine, failing, 500, 8);
+                    System.out.printf("%-12s 后端收到 %,d 个请求，预算拒绝 %,d 次重试%n",
+                            limited ? "预算 10%:" : "不限预算:", server.hits.get() - hitsBefore, engine.budgetDenied());
+                }
+            }
+        }
+
+        System.out.println("\n关键：重试策略本身也是不可变对象，用构建器配置，可被许多请求共享");
+    }
+}
@@ -1,20 +1,25 @@
 package chapter2.item2;
 
+import chapter2.item2.Item2_BuilderProcessor.GenerateBuilder;
+
 /**
  * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
  * 
  * 高级用法：层次化的 Builder（适用于类层次结构）
  * - 使用泛型和递归类型参数
  * - 子类 Builder 返回子类型
+ * - 加上 @GenerateBuilder 后，同样的构建器可以在编译期生成（见 Item2_BuilderProcessor）
+ * - Animal 是密封类，只允许 Dog 和 Bird 两个子类，批量处理可以按子类型分组（见 Item2_SealedBatch）
  * 
  * @author CN-JeffreyZhou
  */
 public class Item2_HierarchicalBuilder {
     
     /**
-     * 抽象动物类
+     * 抽象动物类（密封：子类型是封闭的，处理时可以穷举）
      */
-    static abstract class Animal {
+    @GenerateBuilder
+    static abstract sealed class Animal permits Dog, Bird {
         final String name;
         final int age;
         
@@ -39,15 +44,24 @@ public class Item2_HierarchicalBuilder {
         }
         
         Animal(Builder<?> builder) {
-            name = builder.name;
-            age = builder.age;
+            this(builder.name, builder.age);
+        }
+        
+        // 按字段顺序接收全部字段：生成的构建器直接调用
+        Animal(String name, int age) {
+            this.name = name;
+            this.age = age;
         }
+        
+        // 每日食量（克）
+        abstract double dailyFoodGrams();
     }
     
     /**
      * 狗类 - 添加品种属性
      */
-    static class Dog extends Animal {
+    @GenerateBuilder
+    static final class Dog extends Animal {
         private final String breed;
         
         public static class Builder extends Animal.Builder<Builder> {
@@ -74,6 +88,16 @@ public class Item2_HierarchicalBuilder {
             breed = builder.breed;
         }
         
+        Dog(String name, int age, String breed) {
+            super(name, age);
+            this.breed = breed;
+        }
+        
+        @Override
+        double dailyFoodGrams() {
+            return 300 + 10.0 * age;
+        }
+        
         @Override
         public String toString() {
             return String.format("狗[名字:%s, 年龄:%d, 品种:%s]", name, age, breed);
@@ -83,7 +107,8 @@ public class Item2_HierarchicalBuilder {
     /**
      * 鸟类 - 添加是否会飞属性
      */
-    static class Bird extends Animal {
+    @GenerateBuilder
+    static final class Bird extends Animal {
         private final boolean canFly;
         
         public static class Builder extends Animal.Builder<Builder> {
@@ -110,6 +135,16 @@ public class Item2_HierarchicalBuilder {
             canFly = builder.canFly;
         }
         
+        Bird(String name, int age, boolean canFly) {
+            super(name, age);
+            this.canFly = canFly;
+        }
+        
+        @Override
+        double dailyFoodGrams() {
+            return canFly ? 30 : 20;   // 会飞的鸟消耗更多
+        }
+        
         @Override
         public String toString() {
             return String.format("鸟[名字:%s, 年龄:%d, 会飞:%s]", name, age, canFly ? "是" : "否");
@@ -0,0 +1,505 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_Builder_RealWorld.HttpRequest;
+import chapter2.item2.Item2_Builder_RealWorld.RetryPolicy;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：执行 HttpRequest 的 HTTP 引擎
+ *
+ * Item2_Builder_RealWorld.HttpRequest 只保存了 timeout、retryCount、followRedirects，
+ * 并没有谁去执行它。HttpEngine 在 java.net.http 上执行这些不可变请求：
+ * 1. 共享的 HttpClient（连接池在客户端内部），同步 send() 与异步 sendAsync() 两套 API
+ * 2. timeout 映射为单次请求的超时；retryCount 为额外尝试次数，网络异常和 5xx 时重试，
+ *    重试前按请求的 RetryPolicy 退避（可选对冲），并受客户端的 RetryBudget 限制。
+ *    只有幂等方法会重试或对冲：POST 可能已经在服务端生效，重发会产生重复的副作用
+ * 3. followRedirects 由两个客户端实现（java.net.http 的重定向策略属于客户端）
+ * 4. 每个主机的并发上限：超出的请求在队列里等待，不阻塞调用线程
+ *
+ * 演示使用 com.sun.net.httpserver 启动的本地服务器，不依赖外网。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_HttpEngine {
+
+    /**
+     * 单个主机的并发闸门：异步排队，不占用线程
+     */
+    static final class HostLimiter {
+        private final int maxConcurrent;
+        private final Executor executor;
+        private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        private int active;
+
+        HostLimiter(int maxConcurrent, Executor executor) {
+            this.maxConcurrent = maxConcurrent;
+            this.executor = executor;
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            Runnable start = () -> {
+                CompletableFuture<T> f;
+                try {
+                    f = task.get();
+                } catch (Throwable e) {
+                    f = CompletableFuture.failedFuture(e);
+                }
+                f.whenComplete((value, error) -> {
+                    release();
+                    if (error != null) result.completeExceptionally(error);
+                    else result.complete(value);
+                });
+            };
+            boolean startNow;
+            synchronized (this) {
+                startNow = active < maxConcurrent;
+                if (startNow) active++;
+                else waiting.add(start);
+            }
+            if (startNow) start.run();
+            return result;
+        }
+
+        // 名额直接转交给排队的下一个请求。交给线程池启动：如果在这里直接 run()，
+        // 同步完成的请求会在 release() 里层层递归，排队很长时可能栈溢出
+        private void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) active--;
+            }
+            if (next != null) {
+                try {
+                    executor.execute(next);
+                } catch (RejectedExecutionException e) {
+                    next.run();   // 引擎已关闭：就地启动，让等待者尽快以失败结束
+                }
+            }
+        }
+    }
+
+    /**
+     * 每个客户端的重试预算（令牌桶）：每个请求存入 ratio 个令牌，每次重试或对冲取出 1 个
+     *
+     * 稳态下重试量不超过请求量的 ratio 倍；后端整体故障时，重试很快被预算挡住，不会形成重试风暴。
+     */
+    static final class RetryBudget {
+        private final double ratio;
+        private final double capacity;
+        private double tokens;
+
+        RetryBudget(double ratio, double capacity) {
+            this.ratio = ratio;
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        static RetryBudget unlimited() {
+            return new RetryBudget(0, Double.POSITIVE_INFINITY);
+        }
+
+        synchronized void deposit() {
+            tokens = Math.min(capacity, tokens + ratio);
+        }
+
+        synchronized boolean tryWithdraw() {
+            if (tokens < 1) return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    /**
+     * 某个主机近期成功请求的延迟样本，用于计算对冲等待时间
+     */
+    static final class LatencyTracker {
+        private static final int WINDOW = 1024;
+        private static final int MIN_SAMPLES = 32;
+        private final long[] samples = new long[WINDOW];
+        private long count;
+        private long[] sorted;   // 排序后的快照，每 64 个新样本失效一次
+
+        synchronized void record(long nanos) {
+            samples[(int) (count++ % WINDOW)] = nanos;
+            if (count % 64 == 0) sorted = null;
+        }
+
+        /**
+         * 百分位延迟（纳秒）；样本不足时返回 -1
+         */
+        synchronized long percentileNanos(double p) {
+            int n = (int) Math.min(count, WINDOW);
+            if (n < MIN_SAMPLES) return -1;
+            if (sorted == null) {
+                sorted = Arrays.copyOf(samples, n);
+                Arrays.sort(sorted);
+            }
+            return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+        }
+    }
+
+    static final class HttpEngine implements AutoCloseable {
+        // RFC 9110 定义的幂等方法，可以安全地重发
+        private static final Set<String> IDEMPOTENT = Set.of("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE");
+
+        private final ExecutorService executor;
+        private final HttpClient following;
+        private final HttpClient notFollowing;
+        private final int maxPerHost;
+        private final RetryBudget budget;
+        private final Map<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+        private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder budgetDenied = new LongAdder();
+
+        HttpEngine(int maxPerHost) {
+            this(maxPerHost, new RetryBudget(0.1, 10));
+        }
+
+        HttpEngine(int maxPerHost, RetryBudget budget) {
+            this.maxPerHost = maxPerHost;
+            this.budget = budget;
+            this.executor = Executors.newFixedThreadPool(4, r -> {
+                Thread t = new Thread(r, "http-engine");
+                t.setDaemon(true);
+                return t;
+            });
+            this.following = newClient(HttpClient.Redirect.NORMAL);
+            this.notFollowing = newClient(HttpClient.Redirect.NEVER);
+        }
+
+        private HttpClient newClient(HttpClient.Redirect redirect) {
+            return HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(redirect)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(executor)
+                    .build();
+        }
+
+        /**
+         * 同步执行：阻塞到最后一次尝试结束
+         */
+        HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+            try {
+                return sendAsync(request).get();
+            } catch (ExecutionException e) {
+                Throwable cause = unwrap(e.getCause());
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw new IOException(cause);
+            }
+        }
+
+        /**
+         * 异步执行：每次尝试单独占用主机名额，退避等待期间不占名额
+         */
+        CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+            try {
+                Call call = new Call(request);
+                budget.deposit();
+                return attempt(call, call.idempotent ? request.retryCount() : 0, 0);
+            } catch (RuntimeException e) {   // 例如 URL 无效：异步 API 统一通过 future 报告失败
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        /**
+         * 一次调用在各次尝试之间共享的上下文
+         */
+        private final class Call {
+            final java.net.http.HttpRequest wire;
+            final HttpClient client;
+            final RetryPolicy policy;
+            final HostLimiter limiter;
+            final LatencyTracker latency;
+            final boolean idempotent;
+
+            Call(HttpRequest request) {
+                wire = toWire(request);
+                idempotent = IDEMPOTENT.contains(wire.method());
+                client = request.followRedirects() ? following : notFollowing;
+                policy = request.retryPolicy();
+                String host = hostKey(wire.uri());
+                limiter = limiters.computeIfAbsent(host, k -> new HostLimiter(maxPerHost, executor));
+                latency = latencies.computeIfAbsent(host, k -> new LatencyTracker());
+            }
+        }
+
+        private CompletableFuture<HttpResponse<String>> attempt(Call call, int retriesLeft, int retry) {
+            CompletableFuture<HttpResponse<String>> first = exchange(call);
+            CompletableFuture<HttpResponse<String>> raced = call.policy.hedging() && call.idempotent ? hedge(call, first) : first;
+            return raced
+                    .handle((response, error) -> {
+                        boolean failed = error != null || response.statusCode() >= 500;
+                        if (failed && retriesLeft > 0) {
+                            if (budget.tryWithdraw()) {
+                                retries.increment();
+                                Executor later = CompletableFuture.delayedExecutor(
+                                        call.policy.backoffMillis(retry), TimeUnit.MILLISECONDS, executor);
+                                return CompletableFuture.supplyAsync(() -> attempt(call, retriesLeft - 1, retry + 1), later)
+                                        .thenCompose(f -> f);
+                            }
+                            budgetDenied.increment();
+                        }
+                        // 不再重试：5xx 作为响应返回，网络异常作为异常返回
+                        return error != null
+                                ? CompletableFuture.<HttpResponse<String>>failedFuture(unwrap(error))
+                                : CompletableFuture.completedFuture(response);
+                    })
+                    .thenCompose(f -> f);
+        }
+
+        // 一次真正的网络往返，成功时记录延迟（不含排队时间）
+        private CompletableFuture<HttpResponse<String>> exchange(Call call) {
+            attempts.increment();
+            return call.limiter.submit(() -> {
+                long start = System.nanoTime();
+                return call.client.sendAsync(call.wire, HttpResponse.BodyHandlers.ofString())
+                        .whenComplete((response, error) -> {
+                            if (error == null) call.latency.record(System.nanoTime() - start);
+                        });
+            });
+        }
+
+        /**
+         * 对冲：第一次尝试超过百分位延迟仍未返回，再发一次，先成功者胜出
+         *
+         * 对冲请求同样消耗重试预算；落败的请求不取消（java.net.http 取消 future 并不会中断交换），
+         * 其结果被丢弃。
+         */
+        private CompletableFuture<HttpResponse<String>> hedge(Call call, CompletableFuture<HttpResponse<String>> first) {
+            long delay = call.latency.percentileNanos(call.policy.hedgePercentile());
+            if (delay < 0) return first;   // 样本不足，不对冲
+            delay = Math.max(delay, TimeUnit.MILLISECONDS.toNanos(call.policy.minHedgeDelayMillis()));
+
+            CompletableFuture<HttpResponse<String>> winner = new CompletableFuture<>();
+            AtomicInteger pending = new AtomicInteger(1);
+            BiConsumer<HttpResponse<String>, Throwable> onDone = (response, error) -> {
+                boolean ok = error == null && response.statusCode() < 500;
+                if (ok) {
+                    winner.complete(response);
+                } else if (pending.decrementAndGet() == 0) {   // 全部失败时返回最后一个结果
+                    if (error != null) winner.completeExceptionally(error);
+                    else winner.complete(response);
+                }
+            };
+            first.whenComplete(onDone);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS, executor).execute(() -> {
+                if (winner.isDone() || !budget.tryWithdraw()) return;
+                pending.incrementAndGet();
+                hedges.increment();
+                exchange(call).whenComplete(onDone);
+            });
+            return winner;
+        }
+
+        static java.net.http.HttpRequest toWire(HttpRequest request) {
+            java.net.http.HttpRequest.BodyPublisher body = request.body().isEmpty()
+                    ? java.net.http.HttpRequest.BodyPublishers.noBody()
+                    : java.net.http.HttpRequest.BodyPublishers.ofString(request.body());
+            return java.net.http.HttpRequest.newBuilder(URI.create(request.url()))
+                    .method(request.method(), body)
+                    .timeout(Duration.ofMillis(request.timeout()))
+                    .build();
+        }
+
+        private static String hostKey(URI uri) {
+            return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+        }
+
+        static Throwable unwrap(Throwable e) {
+            while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+                e = e.getCause();
+            }
+            return e;
+        }
+
+        long attempts() { return attempts.sum(); }
+
+        long retries() { return retries.sum(); }
+
+        long hedges() { return hedges.sum(); }
+
+        long budgetDenied() { return budgetDenied.sum(); }
+
+        @Override
+        public void close() {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 本地替身服务器：代替真实后端，供演示和基准使用
+     */
+    static final class StandInServer implements AutoCloseable {
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newFixedThreadPool(32);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final AtomicInteger hits = new AtomicInteger();
+
+        static {
+            // 关闭 Nagle 算法：否则响应头和响应体分两次写出时会碰上延迟 ACK，每个请求多等约 40ms
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        StandInServer() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            handle("/hello", ex -> reply(ex, 200, "你好"));
+            handle("/redirect", ex -> {
+                ex.getResponseHeaders().add("Location", "/hello");
+                reply(ex, 302, "");
+            });
+            handle("/slow", ex -> {
+                sleep(millisParam(ex, 500));
+                reply(ex, 200, "慢响应");
+            });
+            AtomicInteger flaky = new AtomicInteger();
+            handle("/flaky", ex -> reply(ex, flaky.incrementAndGet() % 3 == 0 ? 200 : 503, "第" + flaky.get() + "次"));
+            server.start();
+        }
+
+        // 包装处理器：统计命中次数和服务端同时处理的请求数
+        void handle(String path, HttpHandler handler) {
+            server.createContext(path, ex -> {
+                hits.incrementAndGet();
+                int now = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(now, Math::max);
+                try {
+                    handler.handle(ex);
+                } finally {
+                    inFlight.decrementAndGet();
+                    ex.close();
+                }
+            });
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+        }
+
+        static void reply(HttpExchange ex, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        }
+
+        static int millisParam(HttpExchange ex, int defaultMillis) {
+            String query = ex.getRequestURI().getQuery();
+            return query != null && query.startsWith("ms=") ? Integer.parseInt(query.substring(3)) : defaultMillis;
+        }
+
+        static void sleep(int millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (StandInServer server = new StandInServer(); HttpEngine engine = new HttpEngine(8)) {
+            HttpResponse<String> r = engine.send(new HttpRequest.Builder(server.url("/hello"), "GET").build());
+            System.out.println("同步 GET: " + r.statusCode() + " " + r.body());
+
+            r = engine.send(new HttpRequest.Builder(server.url("/redirect"), "GET").build());
+            System.out.println("跟随重定向: " + r.statusCode() + " " + r.body());
+            r = engine.send(new HttpRequest.Builder(server.url("/redirect"), "GET").followRedirects(false).build());
+            System.out.println("不跟随重定向: " + r.statusCode() + " Location=" + r.headers().firstValue("Location").orElse(""));
+
+            long before = engine.attempts();
+            r = engine.send(new HttpRequest.Builder(server.url("/flaky"), "PUT").body("{}").retryCount(3).build());
+            System.out.println("PUT 重试到成功: " + r.statusCode() + " " + r.body() + "，共尝试 " + (engine.attempts() - before) + " 次");
+            before = engine.attempts();
+            r = engine.send(new HttpRequest.Builder(server.url("/flaky"), "POST").body("{}").retryCount(3).build());
+            System.out.println("POST 不重试: " + r.statusCode() + " " + r.body() + "，共尝试 " + (engine.attempts() - before) + " 次");
+
+            try {
+                engine.send(new HttpRequest.Builder(server.url("/slow?ms=1000"), "GET").timeout(200).build());
+            } catch (IOException e) {
+                System.out.println("超时: " + e.getClass().getSimpleName());
+            }
+
+            // 每主机并发上限：同时发出 40 个慢请求，服务端最多同时看到 8 个
+            StandInServer.sleep(1100);   // 等上面超时的请求在服务端结束
+            server.maxInFlight.set(0);
+            CompletableFuture<?>[] slow = new CompletableFuture<?>[40];
+            for (int i = 0; i < slow.length; i++) {
+                slow[i] = engine.sendAsync(new HttpRequest.Builder(server.url("/slow?ms=20"), "GET").build());
+            }
+            CompletableFuture.allOf(slow).join();
+            System.out.println("40 个并发请求，服务端同时处理的最大数量: " + server.maxInFlight.get() + "（上限 8）");
+
+            // 基准：固定 8 个请求在途（闭环压测），统计吞吐量和单个请求的延迟分布
+            int n = 5_000;
+            for (int round = 0; round < 2; round++) {   // 第一轮用于预热
+                long[] latencies = new long[n];
+                Semaphore outstanding = new Semaphore(8);
+                CompletableFuture<?>[] futures = new CompletableFuture<?>[n];
+                long start = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    outstanding.acquire();
+                    int index = i;
+                    long sent = System.nanoTime();
+                    futures[i] = engine.sendAsync(new HttpRequest.Builder(server.url("/hello"), "GET").build())
+                            .whenComplete((resp, e) -> {
+                                latencies[index] = System.nanoTime() - sent;
+                                outstanding.release();
+                            });
+                }
+                CompletableFuture.allOf(futures).join();
+                long elapsed = System.nanoTime() - start;
+                if (round == 0) continue;
+
+                Arrays.sort(latencies);
+                System.out.printf("%n%,d 个异步 GET（8 个在途）：%n", n);
+                System.out.printf("吞吐量: %,.0f 请求/秒%n", n / (elapsed / 1e9));
+                System.out.printf("延迟 p50: %.2f ms  p99: %.2f ms%n",
+                        percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.99) / 1e6);
+            }
+        }
+
+        System.out.println("\n关键：构建器产出的不可变请求可以放心地在线程间传递、排队和重试");
+    }
+}
@@ -0,0 +1,303 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_Builder.AnimalNutrition;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：列式营养数据仓库与并行聚合
+ *
+ * 按物种统计总卡路里、按年龄段统计蛋白质百分位，原来的做法是对 List&lt;AnimalNutrition&gt;
+ * 做流式分组，每个对象都要经过装箱、Map 查找和中间集合。NutritionStore 的做法：
+ * 1. 用 NutritionStore.Builder 逐条追加（可以直接传入 AnimalNutrition.Builder），
+ *    物种存成字典编号，每个数值字段一个 int[] 列
+ * 2. 分组键把行映射成小整数，部分结果放在按组编号索引的 long[] 里
+ * 3. 行按固定大小切块，用并行流在各块上计算部分结果再合并（求和、平均、百分位）
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_NutritionStore {
+
+    enum Column { AGE, CALORIES, FAT, PROTEIN, VITAMINS }
+
+    /**
+     * 分组键：把一行映射到 [0, groups) 的编号，并给每个编号一个标签
+     */
+    interface GroupKey {
+        int groups(NutritionStore store);
+
+        int groupOf(NutritionStore store, int row);
+
+        String label(NutritionStore store, int group);
+
+        static GroupKey species() {
+            return new GroupKey() {
+                public int groups(NutritionStore s) { return s.speciesNames.length; }
+
+                public int groupOf(NutritionStore s, int row) { return s.species[row]; }
+
+                public String label(NutritionStore s, int group) { return s.speciesNames[group]; }
+            };
+        }
+
+        // 年龄段：[0, width)、[width, 2*width) ...；组编号从最小年龄所在的段开始，负年龄也不会越界
+        static GroupKey ageBand(int width) {
+            if (width <= 0) throw new IllegalArgumentException("年龄段宽度必须大于 0: " + width);
+            return new GroupKey() {
+                public int groups(NutritionStore s) {
+                    return Math.floorDiv(s.maxAge, width) - Math.floorDiv(s.minAge, width) + 1;
+                }
+
+                public int groupOf(NutritionStore s, int row) {
+                    return Math.floorDiv(s.ages[row], width) - Math.floorDiv(s.minAge, width);
+                }
+
+                public String label(NutritionStore s, int group) {
+                    int start = (Math.floorDiv(s.minAge, width) + group) * width;
+                    return start + "-" + (start + width - 1) + "岁";
+                }
+            };
+        }
+    }
+
+    static final class NutritionStore {
+        private static final int CHUNK = 1 << 16;   // 每块 65536 行
+
+        private final String[] speciesNames;
+        private final int[] species;
+        private final int[] ages;
+        private final int[][] columns;   // 按 Column 顺序
+        private final int size;
+        private final int minAge;
+        private final int maxAge;
+
+        public static class Builder {
+            private final Map<String, Integer> speciesIds = new LinkedHashMap<>();
+            private int[] species = new int[1024];
+            private final int[][] columns = new int[Column.values().length][1024];
+            private int size;
+
+            public Builder add(AnimalNutrition n) {
+                if (size == species.length) {
+                    species = Arrays.copyOf(species, size * 2);
+                    for (int c = 0; c < columns.length; c++) columns[c] = Arrays.copyOf(columns[c], size * 2);
+                }
+                species[size] = speciesIds.computeIfAbsent(n.name(), k -> speciesIds.size());
+                columns[Column.AGE.ordinal()][size] = n.age();
+                columns[Column.CALORIES.ordinal()][size] = n.calories();
+                columns[Column.FAT.ordinal()][size] = n.fat();
+                columns[Column.PROTEIN.ordinal()][size] = n.protein();
+                columns[Column.VITAMINS.ordinal()][size] = n.vitamins();
+                size++;
+                return this;
+            }
+
+            public Builder add(AnimalNutrition.Builder builder) {
+                return add(builder.build());
+            }
+
+            public NutritionStore build() {
+                return new NutritionStore(this);
+            }
+        }
+
+        private NutritionStore(Builder b) {
+            size = b.size;
+            speciesNames = b.speciesIds.keySet().toArray(new String[0]);
+            species = Arrays.copyOf(b.species, size);
+            columns = new int[b.columns.length][];
+            for (int c = 0; c < columns.length; c++) columns[c] = Arrays.copyOf(b.columns[c], size);
+            ages = columns[Column.AGE.ordinal()];
+            minAge = Arrays.stream(ages).min().orElse(0);
+            maxAge = Arrays.stream(ages).max().orElse(0);
+        }
+
+        int size() { return size; }
+
+        private int[] column(Column c) {
+            return columns[c.ordinal()];
+        }
+
+        // 把 [0, size) 切成块，并行计算每块的部分结果
+        private IntStream chunks() {
+            return IntStream.range(0, (size + CHUNK - 1) / CHUNK).parallel();
+        }
+
+        long sum(Column c) {
+            int[] values = column(c);
+            return chunks().mapToLong(k -> {
+                long s = 0;
+                for (int i = k * CHUNK, end = Math.min(size, i + CHUNK); i < end; i++) s += values[i];
+                return s;
+            }).sum();
+        }
+
+        double avg(Column c) {
+            return size == 0 ? Double.NaN : sum(c) / (double) size;
+        }
+
+        Map<String, Long> sumBy(GroupKey key, Column c) {
+            long[][] sc = sumsAndCounts(key, c);
+            Map<String, Long> result = new LinkedHashMap<>();
+            for (int g = 0; g < sc[0].length; g++) {
+                if (sc[1][g] > 0) result.put(key.label(this, g), sc[0][g]);
+            }
+            return result;
+        }
+
+        Map<String, Double> avgBy(GroupKey key, Column c) {
+            long[][] sc = sumsAndCounts(key, c);
+            Map<String, Double> result = new LinkedHashMap<>();
+            for (int g = 0; g < sc[0].length; g++) {
+                if (sc[1][g] > 0) result.put(key.label(this, g), sc[0][g] / (double) sc[1][g]);
+            }
+            return result;
+        }
+
+        // 每块得到 [sums, counts] 两个按组编号索引的数组，再逐项相加
+        private long[][] sumsAndCounts(GroupKey key, Column c) {
+            int groups = key.groups(this);
+            int[] values = column(c);
+            return chunks().mapToObj(k -> {
+                long[] sums = new long[groups];
+                long[] counts = new long[groups];
+                for (int i = k * CHUNK, end = Math.min(size, i + CHUNK); i < end; i++) {
+                    int g = key.groupOf(this, i);
+                    sums[g] += values[i];
+                    counts[g]++;
+                }
+                return new long[][]{sums, counts};
+            }).reduce(new long[][]{new long[groups], new long[groups]}, (a, b) -> {
+                long[][] r = {a[0].clone(), a[1].clone()};
+                for (int g = 0; g < groups; g++) {
+                    r[0][g] += b[0][g];
+                    r[1][g] += b[1][g];
+                }
+                return r;
+            });
+        }
+
+        /**
+         * 按组的百分位（最近秩法）：
+         * 各块并行统计每组行数，算出每块在每组中的写入起点，各块并行把值分散到按组连续的数组，
+         * 最后各组并行排序取值
+         */
+        Map<String, Integer> percentileBy(GroupKey key, Column c, double p) {
+            int groups = key.groups(this);
+            int[] values = column(c);
+            int[][] chunkCounts = chunks().mapToObj(k -> {
+                int[] counts = new int[groups];
+                for (int i = k * CHUNK, end = Math.min(size, i + CHUNK); i < end; i++) counts[key.groupOf(this, i)]++;
+                return counts;
+            }).toArray(int[][]::new);
+
+            int[] counts = new int[groups];
+            int[] offsets = new int[groups + 1];
+            int[][] chunkStarts = new int[chunkCounts.length][groups];
+            for (int g = 0; g < groups; g++) {
+                int at = offsets[g];
+                for (int k = 0; k < chunkCounts.length; k++) {
+                    chunkStarts[k][g] = at;
+                    at += chunkCounts[k][g];
+                }
+                counts[g] = at - offsets[g];
+                offsets[g + 1] = at;
+            }
+
+            int[] grouped = new int[size];
+            chunks().forEach(k -> {
+                int[] cursor = chunkStarts[k];   // 每块只写自己的区间，互不重叠
+                for (int i = k * CHUNK, end = Math.min(size, i + CHUNK); i < end; i++) {
+                    grouped[cursor[key.groupOf(this, i)]++] = values[i];
+                }
+            });
+
+            int[] result = new int[groups];
+            IntStream.range(0, groups).parallel().filter(g -> counts[g] > 0).forEach(g -> {
+                Arrays.sort(grouped, offsets[g], offsets[g + 1]);
+                result[g] = grouped[offsets[g] + rank(counts[g], p)];
+            });
+            Map<String, Integer> labelled = new LinkedHashMap<>();
+            for (int g = 0; g < groups; g++) {
+                if (counts[g] > 0) labelled.put(key.label(this, g), result[g]);
+            }
+            return labelled;
+        }
+    }
+
+    // 最近秩法：第 ceil(p * n) 个（从 1 数起）
+    static int rank(int n, double p) {
+        return Math.max(0, Math.min(n - 1, (int) Math.ceil(p * n) - 1));
+    }
+
+    // ==================== 对照组：对象列表 + 流 ====================
+
+    static Map<String, Long> caloriesBySpecies(List<AnimalNutrition> list) {
+        return list.stream().collect(Collectors.groupingBy(AnimalNutrition::name, Collectors.summingLong(AnimalNutrition::calories)));
+    }
+
+    static Map<String, Integer> proteinPercentileByAgeBand(List<AnimalNutrition> list, int width, double p) {
+        Map<String, Integer> result = new TreeMap<>();
+        list.stream()
+                .collect(Collectors.groupingBy(n -> Math.floorDiv(n.age(), width), Collectors.mapping(AnimalNutrition::protein, Collectors.toList())))
+                .forEach((band, proteins) -> {
+                    Collections.sort(proteins);
+                    result.put((band * width) + "-" + (band * width + width - 1) + "岁", proteins.get(rank(proteins.size(), p)));
+                });
+        return result;
+    }
+
+    private static long timeMillis(Runnable task) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {   // 取各轮最短时间，前几轮相当于预热
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000;
+    }
+
+    public static void main(String[] args) {
+        int n = 2_000_000;
+        String[] kinds = {"狗", "猫", "兔", "鸟", "鱼"};
+        Random random = new Random(13);
+        List<AnimalNutrition> list = new ArrayList<>(n);
+        NutritionStore.Builder storeBuilder = new NutritionStore.Builder();
+        AnimalNutrition.ReusableBuilder builder = new AnimalNutrition.ReusableBuilder();
+        for (int i = 0; i < n; i++) {
+            AnimalNutrition record = builder.reset(kinds[random.nextInt(kinds.length)], random.nextInt(20))
+                    .calories(100 + random.nextInt(900))
+                    .fat(random.nextInt(50))
+                    .protein(random.nextInt(60))
+                    .vitamins(random.nextInt(30))
+                    .build();
+            list.add(record);
+            storeBuilder.add(record);
+        }
+        NutritionStore store = storeBuilder.build();
+
+        System.out.println("按物种总卡路里:        " + store.sumBy(GroupKey.species(), Column.CALORIES));
+        System.out.println("按物种平均脂肪:        " + store.avgBy(GroupKey.species(), Column.FAT).entrySet().stream()
+                .map(e -> e.getKey() + "=" + String.format("%.2f", e.getValue())).collect(Collectors.joining(", ", "{", "}")));
+        System.out.println("按年龄段蛋白质 p90:    " + store.percentileBy(GroupKey.ageBand(5), Column.PROTEIN, 0.9));
+        System.out.printf("全体平均卡路里:        %.2f%n", store.avg(Column.CALORIES));
+
+        boolean same = new TreeMap<>(caloriesBySpecies(list)).equals(new TreeMap<>(store.sumBy(GroupKey.species(), Column.CALORIES)))
+                && proteinPercentileByAgeBand(list, 5, 0.9).equals(new TreeMap<>(store.percentileBy(GroupKey.ageBand(5), Column.PROTEIN, 0.9)));
+        System.out.println("与对象列表的结果一致: " + same);
+
+        System.out.printf("%n%,d 条记录（并行度 %d）：%n", n, java.util.concurrent.ForkJoinPool.getCommonPoolParallelism());
+        System.out.printf("按物种总卡路里   List 流: %4d ms   列式仓库: %4d ms%n",
+                timeMillis(() -> caloriesBySpecies(list)),
+                timeMillis(() -> store.sumBy(GroupKey.species(), Column.CALORIES)));
+        System.out.printf("按年龄段 p90     List 流: %4d ms   列式仓库: %4d ms%n",
+                timeMillis(() -> proteinPercentileByAgeBand(list, 5, 0.9)),
+                timeMillis(() -> store.percentileBy(GroupKey.ageBand(5), Column.PROTEIN, 0.9)));
+
+        System.out.println("\n关键：构建器负责可读地产生数据，分析时换成按列存放的原始数组");
+    }
+}
@@ -0,0 +1,198 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_Builder_RealWorld.HttpRequest;
+import chapter2.item2.Item2_HttpEngine.HttpEngine;
+import chapter2.item2.Item2_HttpEngine.StandInServer;
+
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：合并相同的在途请求（single-flight）
+ *
+ * 服务里经常在同一时刻构建出许多相同的 GET 请求，每一个都打到后端。
+ * HttpRequest 是不可变的值对象，按方法、URL、请求体和是否跟随重定向实现 equals/hashCode 后，
+ * 就可以直接作为 Map 的键：
+ * 1. 相同请求在途时，后来者共享同一次调用的结果，后端只收到一次
+ * 2. 可选的短时响应缓存：调用结束后 ttl 内的相同请求直接返回缓存的 2xx 响应
+ * 3. 只合并 GET / HEAD；POST 等有副作用的请求照常逐个执行
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_RequestCoalescing {
+
+    static final class CoalescingClient {
+        private static final Set<String> COALESCIBLE = Set.of("GET", "HEAD");
+
+        private final HttpEngine engine;
+        private final long cacheTtlNanos;
+        private final int maxCacheEntries;
+        private final Map<HttpRequest, CompletableFuture<HttpResponse<String>>> inFlight = new ConcurrentHashMap<>();
+        private final Map<HttpRequest, Cached> cache = new ConcurrentHashMap<>();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+
+        private static final class Cached {
+            final HttpResponse<String> response;
+            final long expiresAt;
+
+            Cached(HttpResponse<String> response, long expiresAt) {
+                this.response = response;
+                this.expiresAt = expiresAt;
+            }
+        }
+
+        /**
+         * @param cacheTtlMillis 响应缓存时间，0 表示只合并在途请求、不缓存
+         */
+        CoalescingClient(HttpEngine engine, long cacheTtlMillis, int maxCacheEntries) {
+            this.engine = engine;
+            this.cacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(cacheTtlMillis);
+            this.maxCacheEntries = maxCacheEntries;
+        }
+
+        CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+            calls.increment();
+            if (!COALESCIBLE.contains(request.method())) {
+                return engine.sendAsync(request);
+            }
+            HttpResponse<String> cached = cachedResponse(request);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+
+            CompletableFuture<HttpResponse<String>> mine = new CompletableFuture<>();
+            CompletableFuture<HttpResponse<String>> leader = inFlight.putIfAbsent(request, mine);
+            if (leader != null) {
+                coalesced.increment();
+                // 副本：调用方完成或取消它不会影响其他等待者；超时按跟随者自己的请求计算
+                return leader.copy().orTimeout(request.timeout(), TimeUnit.MILLISECONDS);
+            }
+            // 上面查缓存之后、putIfAbsent 之前，前一个领头者可能刚好写完缓存并移出在途表。
+            // 领头者总是先写缓存再移出在途表，所以抢到位置后再查一次缓存就不会重复请求后端
+            cached = cachedResponse(request);
+            if (cached != null) {
+                inFlight.remove(request, mine);
+                mine.complete(cached);
+                return mine.copy();
+            }
+            engine.sendAsync(request).whenComplete((response, error) -> {
+                if (error == null && cacheTtlNanos > 0 && response.statusCode() / 100 == 2) {
+                    if (cache.size() >= maxCacheEntries) evictExpired();
+                    if (cache.size() < maxCacheEntries) {
+                        cache.put(request, new Cached(response, System.nanoTime() + cacheTtlNanos));
+                    }
+                }
+                inFlight.remove(request, mine);
+                if (error != null) mine.completeExceptionally(error);
+                else mine.complete(response);
+            });
+            return mine.copy();
+        }
+
+        // 未过期的缓存响应，没有则返回 null
+        private HttpResponse<String> cachedResponse(HttpRequest request) {
+            if (cacheTtlNanos <= 0) return null;
+            Cached cached = cache.get(request);
+            if (cached == null) return null;
+            if (cached.expiresAt - System.nanoTime() > 0) {
+                cacheHits.increment();
+                return cached.response;
+            }
+            cache.remove(request, cached);
+            return null;
+        }
+
+        private void evictExpired() {
+            long now = System.nanoTime();
+            cache.values().removeIf(c -> c.expiresAt - now <= 0);
+        }
+
+        long calls() { return calls.sum(); }
+
+        long coalesced() { return coalesced.sum(); }
+
+        long cacheHits() { return cacheHits.sum(); }
+    }
+
+    // 同时发出 n 个请求（循环使用给定的 URL），等待全部完成，返回耗时（毫秒）
+    private static long burst(Function<HttpRequest, CompletableFuture<?>> send, HttpRequest[] requests, int n) {
+        long start = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[n];
+        for (int i = 0; i < n; i++) {
+            futures[i] = send.apply(requests[i % requests.length]);
+        }
+        CompletableFuture.allOf(futures).join();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public static void main(String[] args) throws Exception {
+        HttpRequest a = new HttpRequest.Builder("https://api.example.com/users", "GET").build();
+        HttpRequest b = new HttpRequest.Builder("https://api.example.com/users", "GET").timeout(5000).build();
+        HttpRequest noRedirect = new HttpRequest.Builder("https://api.example.com/users", "GET").followRedirects(false).build();
+        System.out.println("相同请求 equals: " + a.equals(b) + "，hashCode 相同: " + (a.hashCode() == b.hashCode()));
+        System.out.println("不跟随重定向的请求 equals: " + a.equals(noRedirect) + "（响应可能是 3xx，不能共享）");
+
+        try (StandInServer server = new StandInServer(); HttpEngine engine = new HttpEngine(64)) {
+            server.handle("/users", ex -> {
+                StandInServer.sleep(50);   // 模拟较慢的后端查询
+                StandInServer.reply(ex, 200, "[\"张三\",\"李四\"]");
+            });
+            HttpRequest users = new HttpRequest.Builder(server.url("/users"), "GET").build();
+
+            CoalescingClient client = new CoalescingClient(engine, 0, 0);
+            int hits = server.hits.get();
+            CompletableFuture<?>[] same = new CompletableFuture<?>[100];
+            for (int i = 0; i < same.length; i++) same[i] = client.sendAsync(users);
+            CompletableFuture.allOf(same).join();
+            System.out.printf("%n同时发出 100 个相同的 GET：后端收到 %d 个，合并 %d 个%n",
+                    server.hits.get() - hits, client.coalesced());
+
+            // 同一个 URL，一个跟随重定向、一个不跟随：各自拿到自己的响应
+            server.handle("/old-users", ex -> {
+                StandInServer.sleep(50);
+                ex.getResponseHeaders().add("Location", "/users");
+                StandInServer.reply(ex, 302, "moved");
+            });
+            HttpRequest follow = new HttpRequest.Builder(server.url("/old-users"), "GET").build();
+            HttpRequest stay = new HttpRequest.Builder(server.url("/old-users"), "GET").followRedirects(false).build();
+            CompletableFuture<HttpResponse<String>> followed = client.sendAsync(follow);
+            CompletableFuture<HttpResponse<String>> stayed = client.sendAsync(stay);
+            System.out.println("同时请求 /old-users：跟随重定向 -> " + followed.join().statusCode()
+                    + "，不跟随 -> " + stayed.join().statusCode());
+
+            HttpRequest post = new HttpRequest.Builder(server.url("/users"), "POST").body("{\"name\":\"王五\"}").build();
+            hits = server.hits.get();
+            CompletableFuture.allOf(client.sendAsync(post), client.sendAsync(post)).join();
+            System.out.println("2 个相同的 POST：后端收到 " + (server.hits.get() - hits) + " 个（有副作用，不合并）");
+
+            // 基准：10 个不同的 URL，每轮同时发出 1000 个请求，共 5 轮
+            HttpRequest[] hot = new HttpRequest[10];
+            for (int i = 0; i < hot.length; i++) {
+                hot[i] = new HttpRequest.Builder(server.url("/users?page=" + i), "GET").build();
+            }
+            System.out.println("\n10 个热点 URL，每轮同时 1,000 个请求，共 5 轮：");
+            for (long ttl : new long[]{-1, 0, 200}) {
+                Function<HttpRequest, CompletableFuture<?>> send = ttl < 0
+                        ? engine::sendAsync   // 对照组：不合并
+                        : new CoalescingClient(engine, ttl, 1024)::sendAsync;
+                hits = server.hits.get();
+                long millis = 0;
+                for (int round = 0; round < 5; round++) millis += burst(send, hot, 1_000);
+                String label = ttl < 0 ? "直接执行" : ttl == 0 ? "合并在途请求" : "合并 + 缓存 200ms";
+                System.out.printf("后端收到 %,5d 个，耗时 %,5d ms  %s%n", server.hits.get() - hits, millis, label);
+            }
+        }
+
+        System.out.println("\n关键：不可变请求 + 正确的 equals/hashCode，就能直接当作合并和缓存的键");
+    }
+}
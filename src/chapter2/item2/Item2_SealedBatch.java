@@ -0,0 +1,145 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_HierarchicalBuilder.Animal;
+import chapter2.item2.Item2_HierarchicalBuilder.Bird;
+import chapter2.item2.Item2_HierarchicalBuilder.Dog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：密封层次结构 + 按子类型分组的批量处理
+ *
+ * Item2_HierarchicalBuilder.Animal 现在是 sealed，只允许 final 的 Dog 和 Bird。
+ * 遍历混合的 List&lt;Animal&gt; 时，每次 a.dailyFoodGrams() 都是虚调用；子类型一多，
+ * 调用点就变成"多态"的，JIT 无法内联。AnimalBatch 的做法：
+ * 1. 一次遍历把混合集合按子类型分到各自的数组（子类型封闭，分支可以穷举）
+ * 2. 每个子类型一个内层循环，接收者是 final 类，调用静态绑定、可以内联
+ *
+ * 说明：Java 17 的 switch 模式匹配还是预览特性，这里用 instanceof 模式链代替；
+ * 密封保证了最后的 else 分支不可达。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_SealedBatch {
+
+    static final class AnimalBatch {
+        private Dog[] dogs = new Dog[16];
+        private Bird[] birds = new Bird[16];
+        private int dogCount;
+        private int birdCount;
+
+        private AnimalBatch() {
+        }
+
+        /**
+         * 按子类型分组：每只动物只判断一次类型
+         */
+        static AnimalBatch partition(Collection<? extends Animal> animals) {
+            AnimalBatch batch = new AnimalBatch();
+            for (Animal a : animals) {
+                if (a instanceof Dog d) {
+                    batch.addDog(d);
+                } else if (a instanceof Bird b) {
+                    batch.addBird(b);
+                } else {
+                    // Animal 是 sealed 的，新增子类型时 permits 列表和这里必须一起修改
+                    throw new AssertionError("未知的 Animal 子类型: " + a.getClass());
+                }
+            }
+            return batch;
+        }
+
+        private void addDog(Dog d) {
+            if (dogCount == dogs.length) dogs = Arrays.copyOf(dogs, dogCount * 2);
+            dogs[dogCount++] = d;
+        }
+
+        private void addBird(Bird b) {
+            if (birdCount == birds.length) birds = Arrays.copyOf(birds, birdCount * 2);
+            birds[birdCount++] = b;
+        }
+
+        int dogCount() { return dogCount; }
+
+        int birdCount() { return birdCount; }
+
+        double totalDailyFoodGrams() {
+            return dogFood(dogs, dogCount) + birdFood(birds, birdCount);
+        }
+
+        // 单态内核：Dog 是 final 类，dailyFoodGrams() 静态绑定
+        private static double dogFood(Dog[] dogs, int n) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += dogs[i].dailyFoodGrams();
+            }
+            return sum;
+        }
+
+        private static double birdFood(Bird[] birds, int n) {
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += birds[i].dailyFoodGrams();
+            }
+            return sum;
+        }
+    }
+
+    // 对照组：混合列表上的虚调用
+    static double totalDailyFoodGrams(List<? extends Animal> animals) {
+        double sum = 0;
+        for (Animal a : animals) {
+            sum += a.dailyFoodGrams();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) {
+        List<Animal> zoo = List.of(
+                new Dog.Builder().name("旺财").age(3).breed("金毛").build(),
+                new Bird.Builder().name("小黄").age(1).canFly(true).build(),
+                new Dog.Builder().name("阿黑").age(8).breed("柯基").build());
+        AnimalBatch small = AnimalBatch.partition(zoo);
+        System.out.printf("分组：%d 只狗，%d 只鸟，每日食量共 %.0f 克%n",
+                small.dogCount(), small.birdCount(), small.totalDailyFoodGrams());
+
+        int n = 2_000_000;
+        Random random = new Random(3);
+        List<Animal> mixed = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            mixed.add(random.nextBoolean()
+                    ? new Dog.Builder().name("狗" + i).age(random.nextInt(15)).breed("金毛").build()
+                    : new Bird.Builder().name("鸟" + i).age(random.nextInt(5)).canFly(random.nextBoolean()).build());
+        }
+
+        long start = System.nanoTime();
+        AnimalBatch batch = AnimalBatch.partition(mixed);   // 集合不变时，分组只做一次
+        long partitioning = System.nanoTime() - start;
+
+        long virtual = Long.MAX_VALUE, grouped = Long.MAX_VALUE;
+        double a = 0, b = 0;
+        for (int round = 0; round < 5; round++) {   // 取各轮最短时间，前几轮相当于预热
+            start = System.nanoTime();
+            a = totalDailyFoodGrams(mixed);
+            virtual = Math.min(virtual, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            b = batch.totalDailyFoodGrams();
+            grouped = Math.min(grouped, System.nanoTime() - start);
+        }
+        System.out.printf("%n%,d 只动物（狗和鸟随机交错）计算每日食量：%n", n);
+        System.out.printf("混合列表 + 虚调用:   %d ms%n", virtual / 1_000_000);
+        System.out.printf("按子类型分组的内核: %d ms（一次性分组 %d ms）%n",
+                grouped / 1_000_000, partitioning / 1_000_000);
+        System.out.println("结果一致: " + (Math.abs(a - b) < 1e-6 * Math.abs(a)));
+        System.out.println("（只有两个子类型时 JIT 还能用双态内联缓存；子类型更多时虚调用的代价更明显）");
+
+        System.out.println("\n关键：密封类让子类型可以穷举，按类型分组后每个循环都是单态的");
+    }
+}
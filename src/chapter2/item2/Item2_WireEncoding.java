@@ -0,0 +1,172 @@
+package chapter2.item2;
+
+import chapter2.item2.Item2_Builder_RealWorld.HttpRequest;
+import chapter2.item2.Item2_HttpEngine.StandInServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import static chapter2.Benchmarks.allocatedBytes;
+
+/**
+ * 演示 Effective Java 第2条：遇到多个构造器参数时要考虑使用构建器
+ *
+ * 进阶：缓存不可变请求的线路编码
+ *
+ * HttpRequest 构建后不再改变，它的 HTTP/1.1 报文也不会变。原来每次发送（包括每次重试）
+ * 都要重新拼接请求行、请求头并编码成字节。HttpRequest.wireFormat() 改为：
+ * 1. 第一次调用时编码一次，缓存在只读的直接缓冲区中
+ * 2. 之后每次返回 duplicate()：共享同一块内存，只是独立的 position / limit
+ * 3. 直接缓冲区交给 SocketChannel.write() 时，JDK 不必再复制到临时的本地内存
+ *
+ * 对照组 encodeHttp11() 编码到普通的堆缓冲区，和原来的做法一样，不额外分配直接内存。
+ *
+ * java.net.http 有自己的编码逻辑；这个缓存服务于直接使用 SocketChannel 的发送方。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item2_WireEncoding {
+
+    /**
+     * 最简单的 HTTP/1.1 连接：写出请求，读到完整响应（按 Content-Length）。
+     * 响应缓冲区从 8KB 开始按需扩大，超过 MAX_RESPONSE 时失败。
+     */
+    static final class RawConnection implements AutoCloseable {
+        static final int MAX_RESPONSE = 16 * 1024 * 1024;
+
+        private final SocketChannel channel;
+        private ByteBuffer in = ByteBuffer.allocate(8192);
+
+        RawConnection(String url) throws IOException {
+            URI uri = URI.create(url);
+            channel = SocketChannel.open(new InetSocketAddress(uri.getHost(), uri.getPort()));
+        }
+
+        String exchange(ByteBuffer request) throws IOException {
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+            in.clear();
+            int headerEnd;
+            while ((headerEnd = indexOfBlankLine(in)) < 0) {
+                // 缓冲区满了还读不到头部结束：先扩容，否则 read() 会一直返回 0
+                if (!in.hasRemaining()) ensureCapacity(in.capacity() + 1L);
+                if (channel.read(in) < 0) throw new IOException("连接已关闭");
+            }
+            String head = new String(in.array(), 0, headerEnd, StandardCharsets.US_ASCII);
+            int contentLength = 0;
+            for (String line : head.split("\r\n")) {
+                if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    contentLength = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            int bodyStart = headerEnd + 4;
+            ensureCapacity((long) bodyStart + contentLength);
+            while (in.position() < bodyStart + contentLength) {
+                if (channel.read(in) < 0) throw new IOException("连接已关闭");
+            }
+            String status = head.substring(0, head.indexOf("\r\n"));
+            return status + " " + new String(in.array(), bodyStart, contentLength, StandardCharsets.UTF_8);
+        }
+
+        private void ensureCapacity(long required) throws IOException {
+            if (required <= in.capacity()) return;
+            if (required > MAX_RESPONSE) {
+                throw new IOException("响应超过 " + MAX_RESPONSE + " 字节");
+            }
+            ByteBuffer bigger = ByteBuffer.allocate((int) Math.max(required, Math.min(MAX_RESPONSE, 2L * in.capacity())));
+            in = bigger.put(in.flip());
+        }
+
+        private static int indexOfBlankLine(ByteBuffer buffer) {
+            byte[] a = buffer.array();
+            for (int i = 0; i + 3 < buffer.position(); i++) {
+                if (a[i] == '\r' && a[i + 1] == '\n' && a[i + 2] == '\r' && a[i + 3] == '\n') return i;
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static long sink;
+
+    // 每次发送都重新编码到堆缓冲区（原来的做法）
+    private static long encodeEverySend(HttpRequest request, int n) {
+        long bytes = 0;
+        for (int i = 0; i < n; i++) {
+            bytes += request.encodeHttp11().remaining();
+        }
+        return bytes;
+    }
+
+    // 使用缓存的编码
+    private static long cachedEverySend(HttpRequest request, int n) {
+        long bytes = 0;
+        for (int i = 0; i < n; i++) {
+            bytes += request.wireFormat().remaining();
+        }
+        return bytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (StandInServer server = new StandInServer()) {
+            server.handle("/orders", ex -> {
+                byte[] body = ex.getRequestBody().readAllBytes();
+                StandInServer.reply(ex, 200, "收到 " + body.length + " 字节");
+            });
+            HttpRequest post = new HttpRequest.Builder(server.url("/orders"), "POST")
+                    .body("{\"product\":\"book\",\"quantity\":2}")
+                    .build();
+
+            ByteBuffer wire = post.wireFormat();
+            System.out.println("编码后的报文（" + wire.remaining() + " 字节）：");
+            byte[] copy = new byte[wire.remaining()];
+            wire.duplicate().get(copy);
+            System.out.println(new String(copy, StandardCharsets.UTF_8).replace("\r\n", "↵\n"));
+
+            System.out.println("\n同一份编码在一条连接上发送 3 次（如首次发送 + 2 次重试）：");
+            try (RawConnection connection = new RawConnection(server.url("/"))) {
+                for (int i = 0; i < 3; i++) {
+                    System.out.println("  " + connection.exchange(post.wireFormat()));
+                }
+                // 超过初始 8KB 的响应：缓冲区按需扩大
+                server.handle("/catalog", ex -> StandInServer.reply(ex, 200, "书".repeat(40_000)));
+                HttpRequest catalog = new HttpRequest.Builder(server.url("/catalog"), "GET").build();
+                String reply = connection.exchange(catalog.wireFormat());
+                System.out.println("  " + reply.substring(0, 20) + "…（共 " + reply.length() + " 个字符）");
+            }
+        }
+
+        HttpRequest request = new HttpRequest.Builder("https://api.example.com/orders?region=cn", "POST")
+                .body("{\"product\":\"book\",\"quantity\":2}")
+                .build();
+        int n = 1_000_000;
+        long[] time = {Long.MAX_VALUE, Long.MAX_VALUE};
+        long[] bytes = new long[2];
+        for (int round = 0; round < 5; round++) {   // 取各轮最短时间，前几轮相当于预热
+            long b = allocatedBytes(), t = System.nanoTime();
+            sink += encodeEverySend(request, n);
+            time[0] = Math.min(time[0], System.nanoTime() - t);
+            bytes[0] = allocatedBytes() - b;
+
+            b = allocatedBytes();
+            t = System.nanoTime();
+            sink += cachedEverySend(request, n);
+            time[1] = Math.min(time[1], System.nanoTime() - t);
+            bytes[1] = allocatedBytes() - b;
+        }
+        System.out.printf("%n每次发送准备报文的开销（%,d 次）：%n", n);
+        System.out.printf("每次重新编码: %6.1f ns/次  %,7d 字节/次%n", time[0] / (double) n, bytes[0] / n);
+        System.out.printf("缓存的编码:   %6.1f ns/次  %,7d 字节/次%n", time[1] / (double) n, bytes[1] / n);
+
+        System.out.println("\n关键：不可变对象的派生结果可以算一次、缓存起来，随意共享");
+    }
+}
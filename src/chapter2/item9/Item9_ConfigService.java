@@ -0,0 +1,198 @@
+package chapter2.item9;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * 演示 Effective Java 第9条：热加载、只解析一次的配置服务
+ *
+ * Item9_RealWorld.ConfigLoader.loadConfig() 每次调用都重新读取并解析文件，
+ * 调用方每次使用还要再 Integer.parseInt("timeout")。
+ *
+ * 改进：
+ * 1. 加载时一次性解析成类型化的不可变快照（ConfigSnapshot）
+ * 2. 用 WatchService 监听文件变化，变化后构建新快照
+ * 3. 通过一次 volatile 写发布新快照，读取方无锁、无解析
+ * 4. 服务本身是资源（持有 WatchService 和监听线程），实现 AutoCloseable
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_ConfigService {
+
+    /**
+     * 不可变配置快照：字段在构造时解析完成
+     */
+    static final class ConfigSnapshot {
+        static final ConfigSnapshot DEFAULTS = new ConfigSnapshot(0, Map.of());
+
+        private final long version;
+        private final int timeout;
+        private final int retries;
+        private final Map<String, String> raw;
+
+        private ConfigSnapshot(long version, Map<String, String> raw) {
+            this.version = version;
+            this.raw = raw;
+            this.timeout = parseInt(raw, "timeout", 30);
+            this.retries = parseInt(raw, "retries", 3);
+        }
+
+        static ConfigSnapshot parse(long version, Properties props) {
+            Map<String, String> raw = new HashMap<>();
+            for (String key : props.stringPropertyNames()) {
+                raw.put(key, props.getProperty(key));
+            }
+            return new ConfigSnapshot(version, Collections.unmodifiableMap(raw));
+        }
+
+        private static int parseInt(Map<String, String> raw, String key, int defaultValue) {
+            String value = raw.get(key);
+            if (value == null) return defaultValue;
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("配置项 " + key + " 不是整数: " + value, e);
+            }
+        }
+
+        long version() { return version; }
+
+        int timeout() { return timeout; }
+
+        int retries() { return retries; }
+
+        String get(String key) { return raw.get(key); }
+
+        @Override
+        public String toString() {
+            return "v" + version + " timeout=" + timeout + " retries=" + retries;
+        }
+    }
+
+    /**
+     * 配置服务：读取方只做一次 volatile 读
+     */
+    static final class ConfigService implements AutoCloseable {
+        private final Path file;
+        private final WatchService watcher;
+        private final Thread watchThread;
+        private volatile ConfigSnapshot current;
+        private long version;   // 只在构造器和监听线程中修改
+
+        ConfigService(Path file) throws IOException {
+            this.file = file.toAbsolutePath();
+            this.current = load(++version);
+            if (current == null) current = ConfigSnapshot.DEFAULTS;
+
+            this.watcher = FileSystems.getDefault().newWatchService();
+            this.file.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            this.watchThread = new Thread(this::watchLoop, "config-watcher");
+            watchThread.setDaemon(true);
+            watchThread.start();
+        }
+
+        /**
+         * 热路径：无锁、无解析
+         */
+        ConfigSnapshot snapshot() {
+            return current;
+        }
+
+        /**
+         * 重新加载；文件缺失、为空或内容非法时返回 null，保留旧快照
+         */
+        private ConfigSnapshot load(long newVersion) {
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                props.load(in);
+                if (props.isEmpty()) {
+                    throw new IOException("配置文件为空（可能正在写入）");
+                }
+                return ConfigSnapshot.parse(newVersion, props);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("配置加载失败，保留当前配置: " + e.getMessage());
+                return null;
+            }
+        }
+
+        private void watchLoop() {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (file.getFileName().equals(event.context())) changed = true;
+                    }
+                    key.reset();
+                    if (changed) {
+                        ConfigSnapshot next = load(++version);
+                        if (next != null) current = next;   // 一次 volatile 写完成发布
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // close() 关闭了 WatchService，监听线程随之退出
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            watcher.close();
+            watchThread.interrupt();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== 热加载配置服务 ===\n");
+
+        Path dir = Files.createTempDirectory("item9-config");
+        Path file = dir.resolve("app.properties");
+        Files.writeString(file, "timeout=30\nretries=3\n");
+
+        int lookups = 200_000;
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < lookups; i++) {
+            Properties props = Item9_RealWorld.ConfigLoader.loadConfig(file.toString());
+            sum += Integer.parseInt(props.getProperty("timeout"));
+        }
+        long legacy = System.nanoTime() - start;
+
+        try (ConfigService config = new ConfigService(file)) {
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                sum += config.snapshot().timeout();
+            }
+            long snapshot = System.nanoTime() - start;
+
+            System.out.printf("每次 loadConfig + parseInt: %8.1f ms%n", legacy / 1e6);
+            System.out.printf("读取不可变快照:            %8.1f ms%n", snapshot / 1e6);
+            System.out.println("当前配置: " + config.snapshot());
+
+            System.out.println("\n修改配置文件...");
+            Files.writeString(file, "timeout=60\nretries=5\n");
+            long deadline = System.currentTimeMillis() + 15_000;   // 某些平台的 WatchService 靠轮询，稍慢
+            while (config.snapshot().timeout() != 60 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            System.out.println("热加载后: " + config.snapshot());
+        }
+        System.out.println("(校验和 " + sum + ")");
+
+        Files.delete(file);
+        Files.delete(dir);
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. 只在文件变化时解析一次，读取方拿到的是已解析的类型化字段");
+        System.out.println("2. 新快照通过一次 volatile 写发布，读取方无锁");
+        System.out.println("3. 非法配置不会替换当前快照");
+        System.out.println("4. 持有 WatchService 的服务实现 AutoCloseable，用 try-with-resources 关闭");
+    }
+}
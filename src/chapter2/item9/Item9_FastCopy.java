@@ -0,0 +1,236 @@
+package chapter2.item9;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 演示 Effective Java 第9条：try-with-resources 在高性能文件拷贝中的应用
+ *
+ * Item9_TryWithResources.copy() 用 1KB 的 byte[] 中转，每个字节都要在
+ * 内核态和用户态之间拷贝两次，大文件拷贝会变成 CPU 密集型。
+ *
+ * 本示例的拷贝引擎按以下顺序选择策略：
+ * 1. FileChannel.transferTo：由内核直接完成拷贝（Linux 上为 sendfile），零拷贝
+ * 2. 大块直接缓冲区（DirectByteBuffer）：通道不支持零拷贝时的回退方案
+ * 3. 超大文件按区域并行拷贝：每个线程用独立的输入通道，对输出通道做定位写
+ *
+ * 无论走哪条路径，通道都由 try-with-resources 管理，异常时也能正确关闭。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_FastCopy {
+
+    // 超过该大小时按区域并行拷贝
+    static final long PARALLEL_THRESHOLD = 256L * 1024 * 1024;
+    // 回退路径使用的直接缓冲区大小
+    static final int DIRECT_BUFFER_SIZE = 1024 * 1024;
+    // 并行拷贝时每个区域的最小大小，避免区域过碎
+    static final long MIN_REGION_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * 入口：根据文件大小自动选择拷贝策略
+     */
+    static void copy(String src, String dst) throws IOException {
+        copy(Path.of(src), Path.of(dst));
+    }
+
+    static void copy(Path src, Path dst) throws IOException {
+        long size = Files.size(src);
+        if (size >= PARALLEL_THRESHOLD) {
+            parallelCopy(src, dst, Runtime.getRuntime().availableProcessors());
+            return;
+        }
+        try (FileChannel in = FileChannel.open(src, READ);
+             FileChannel out = FileChannel.open(dst, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            transferRegion(in, out, 0, size);
+        }
+    }
+
+    /**
+     * 策略1：零拷贝
+     * transferTo 可能一次只传输一部分，需要循环；
+     * 返回 0 说明当前通道组合不支持零拷贝，剩余部分交给缓冲区回退
+     */
+    static void transferRegion(FileChannel in, FileChannel out, long from, long to) throws IOException {
+        long pos = from;
+        while (pos < to) {
+            long n = in.transferTo(pos, to - pos, out);
+            if (n <= 0) break;
+            pos += n;
+        }
+        if (pos < to) {
+            bufferCopy(in, out, pos, to);
+        }
+    }
+
+    /**
+     * 策略2：直接缓冲区回退
+     * 使用定位读写（read(buf, pos) / write(buf, pos)），不依赖通道的当前位置，
+     * 因此同一个输出通道可以被多个线程安全地共享
+     */
+    static void bufferCopy(FileChannel in, FileChannel out, long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
+        long pos = from;
+        while (pos < to) {
+            buf.clear();
+            if (to - pos < buf.capacity()) {
+                buf.limit((int) (to - pos));
+            }
+            int n = in.read(buf, pos);
+            if (n < 0) throw new IOException("源文件在拷贝过程中被截断: " + pos);
+            buf.flip();
+            long writePos = pos;
+            while (buf.hasRemaining()) {
+                writePos += out.write(buf, writePos);
+            }
+            pos += n;
+        }
+    }
+
+    /**
+     * 策略3：按区域并行拷贝
+     *
+     * 每个区域打开自己的输入通道（通道位置各自独立），
+     * 再通过 out.transferFrom(in, position, count) 定位写入共享的输出通道。
+     * position 超过文件当前大小时 transferFrom 一个字节也不传输，所以先把输出文件撑到最终大小。
+     * 共享通道和线程池同样交给 try-with-resources / finally 管理。
+     */
+    static void parallelCopy(Path src, Path dst, int threads) throws IOException {
+        long size = Files.size(src);
+        int regions = (int) Math.max(1, Math.min(threads, size / MIN_REGION_SIZE));
+        long regionSize = (size + regions - 1) / regions;
+
+        ExecutorService pool = Executors.newFixedThreadPool(regions);
+        try (FileChannel out = FileChannel.open(dst, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            if (size > 0) {
+                out.write(ByteBuffer.wrap(new byte[1]), size - 1);   // 预先设定文件大小（稀疏文件，不实际写满）
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            for (long start = 0; start < size; start += regionSize) {
+                long from = start;
+                long to = Math.min(size, start + regionSize);
+                futures.add(pool.submit(() -> {
+                    copyRegion(src, out, from, to);
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                await(f);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void copyRegion(Path src, FileChannel out, long from, long to) throws IOException {
+        try (FileChannel in = FileChannel.open(src, READ)) {
+            in.position(from);
+            long pos = from;
+            while (pos < to) {
+                long n = out.transferFrom(in, pos, to - pos);
+                if (n <= 0) break;
+                pos += n;
+            }
+            if (pos < to) {
+                bufferCopy(in, out, pos, to);
+            }
+        }
+    }
+
+    private static void await(Future<?> f) throws IOException {
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("拷贝被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("区域拷贝失败", cause);
+        }
+    }
+
+    // ==================== 基准测试 ====================
+
+    @FunctionalInterface
+    interface CopyAction {
+        void copy(Path src, Path dst) throws IOException;
+    }
+
+    private static long time(CopyAction action, Path src, Path dst) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            action.copy(src, dst);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static Path createFile(Path dir, long size) throws IOException {
+        Path file = dir.resolve("src-" + size + ".bin");
+        byte[] chunk = new byte[DIRECT_BUFFER_SIZE];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) i;
+        }
+        try (FileChannel ch = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                ch.write(ByteBuffer.wrap(chunk, 0, (int) Math.min(chunk.length, size - written)));
+            }
+        }
+        return file;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== 文件拷贝策略基准测试 ===\n");
+
+        Path dir = Files.createTempDirectory("item9-copy");
+        // 最后一档超过 PARALLEL_THRESHOLD，copy() 会走并行区域路径
+        long[] sizes = {1L << 20, 16L << 20, 128L << 20, 320L << 20};
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%-10s %14s %14s %14s %14s%n",
+                "大小", "1KB byte[]", "transferTo", "直接缓冲区", "并行区域");
+        for (long size : sizes) {
+            Path src = createFile(dir, size);
+            Path dst = dir.resolve("dst.bin");
+
+            long legacy = time((s, d) -> Item9_TryWithResources.copy(s.toString(), d.toString()), src, dst);
+            long transfer = time(Item9_FastCopy::copy, src, dst);
+            long buffered = time((s, d) -> {
+                try (FileChannel in = FileChannel.open(s, READ);
+                     FileChannel out = FileChannel.open(d, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                    bufferCopy(in, out, 0, in.size());
+                }
+            }, src, dst);
+            long parallel = time((s, d) -> parallelCopy(s, d, threads), src, dst);
+
+            if (Files.mismatch(src, dst) != -1) {
+                throw new AssertionError("拷贝结果不一致: " + size);
+            }
+            System.out.printf("%-10s %11.1f ms %11.1f ms %11.1f ms %11.1f ms%n",
+                    (size >> 20) + " MB", legacy / 1e6, transfer / 1e6, buffered / 1e6, parallel / 1e6);
+
+            Files.delete(src);
+            Files.delete(dst);
+        }
+        Files.delete(dir);
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. transferTo 让内核完成拷贝，数据不经过 Java 堆");
+        System.out.println("2. 不支持零拷贝时回退到大块直接缓冲区，减少系统调用次数");
+        System.out.println("3. 超大文件按区域并行，定位写让多个线程共享一个输出通道");
+        System.out.println("4. 所有通道依然由 try-with-resources 负责关闭");
+    }
+}
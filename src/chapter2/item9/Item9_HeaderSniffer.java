@@ -0,0 +1,193 @@
+package chapter2.item9;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * 演示 Effective Java 第9条：批量读取文件首行（文件头嗅探）
+ *
+ * Item9_TryWithResources.readFirstLine() 为了读一行就创建 BufferedReader
+ * 和 8KB 的字符缓冲区。对几十万个小文件做文件头嗅探时，这些对象全是垃圾。
+ *
+ * 改进：
+ * 1. 每个线程复用一个有界的字节缓冲区，只读取前 N 个字节
+ * 2. 只解码到第一个行结束符为止（'\n'、'\r' 或 "\r\n"，与 BufferedReader.readLine() 一致）
+ * 3. 批量 API 并发处理整个路径列表，每个任务同一时刻只打开一个文件，
+ *    同时打开的文件数不超过线程池的线程数
+ *
+ * 注意：本仓库基于 JDK 17，没有虚拟线程，并发由调用者提供的 Executor 承担；
+ * 超过 N 字节仍没有行结束符时返回截断的首行，截断点退回到完整的 UTF-8 字符边界。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_HeaderSniffer {
+
+    // 默认最多读取的字节数，足够覆盖常见的文件头
+    static final int DEFAULT_LIMIT = 512;
+
+    // 每个线程复用的缓冲区，避免每个文件分配一次
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(DEFAULT_LIMIT));
+
+    /**
+     * 嗅探结果：首行或读取失败的异常
+     */
+    static final class Header {
+        private final Path path;
+        private final String firstLine;
+        private final IOException error;
+
+        Header(Path path, String firstLine, IOException error) {
+            this.path = path;
+            this.firstLine = firstLine;
+            this.error = error;
+        }
+
+        Path path() { return path; }
+
+        // 空文件返回 null，与 BufferedReader.readLine() 一致
+        String firstLine() { return firstLine; }
+
+        IOException error() { return error; }
+
+        boolean ok() { return error == null; }
+
+        @Override
+        public String toString() {
+            return path.getFileName() + " -> " + (ok() ? firstLine : "失败: " + error.getMessage());
+        }
+    }
+
+    /**
+     * 读取首行：最多读取缓冲区容量（默认 DEFAULT_LIMIT）个字节，只解码到第一个行结束符
+     */
+    static String readFirstLine(Path path) throws IOException {
+        return readFirstLine(path, BUFFER.get());
+    }
+
+    static String readFirstLine(Path path, ByteBuffer buf) throws IOException {
+        buf.clear();
+        try (FileChannel ch = FileChannel.open(path, READ)) {
+            while (buf.hasRemaining() && ch.read(buf) > 0) {
+                // 小文件通常一次就读完
+            }
+        }
+        int n = buf.position();
+        if (n == 0) return null;
+
+        // 用绝对位置的 get()，堆缓冲区和直接缓冲区都适用
+        int end = 0;
+        while (end < n && buf.get(end) != '\n' && buf.get(end) != '\r') {
+            end++;
+        }
+        if (end == n) end = completeCharsEnd(buf, n);   // 没有行结束符：可能在多字节字符中间截断
+
+        if (buf.hasArray()) {
+            return new String(buf.array(), buf.arrayOffset(), end, StandardCharsets.UTF_8);
+        }
+        byte[] line = new byte[end];
+        buf.get(0, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    // 去掉末尾不完整的 UTF-8 字符，返回新的结束位置
+    private static int completeCharsEnd(ByteBuffer buf, int n) {
+        int start = n - 1;
+        while (start > 0 && n - start < 4 && (buf.get(start) & 0xC0) == 0x80) {
+            start--;   // 跳过续字节，找到最后一个字符的首字节
+        }
+        int lead = buf.get(start) & 0xFF;
+        int length = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return start + length > n ? start : n;
+    }
+
+    /**
+     * 批量嗅探：结果与输入顺序一致，单个文件失败不影响其他文件
+     *
+     * 每个任务读完一个文件就关闭它，同时打开的文件数不超过 executor 的线程数；
+     * 用固定大小的线程池就能避免耗尽文件描述符，不需要额外的 Semaphore
+     */
+    static List<Header> sniffAll(List<Path> paths, ExecutorService executor) throws InterruptedException {
+        List<Future<Header>> futures = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            futures.add(executor.submit(() -> {
+                try {
+                    return new Header(path, readFirstLine(path), null);
+                } catch (IOException e) {
+                    return new Header(path, null, e);
+                }
+            }));
+        }
+
+        List<Header> headers = new ArrayList<>(paths.size());
+        for (Future<Header> f : futures) {
+            try {
+                headers.add(f.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("嗅探任务异常", e.getCause());
+            }
+        }
+        return headers;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== 批量文件头嗅探 ===\n");
+
+        Path dir = Files.createTempDirectory("item9-sniff");
+        List<Path> paths = new ArrayList<>();
+        String[] headers = {"#!animal-format v1", "{\"type\":\"dog\"}", "species,weight,age", ""};
+        for (int i = 0; i < 20_000; i++) {
+            Path file = dir.resolve("animal-" + i + ".dat");
+            String header = headers[i % headers.length];
+            Files.writeString(file, header.isEmpty() ? "" : header + "\r\nbody line " + i + "\n");
+            paths.add(file);
+        }
+        paths.add(dir.resolve("missing.dat"));   // 不存在的文件
+
+        long start = System.nanoTime();
+        int legacyCount = 0;
+        for (Path p : paths) {
+            String line = Item9_TryWithResources.readFirstLineWithDefault(p.toString(), "<missing>");
+            if (line != null) legacyCount++;
+        }
+        long legacy = System.nanoTime() - start;
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            start = System.nanoTime();
+            List<Header> results = sniffAll(paths, executor);
+            long batch = System.nanoTime() - start;
+
+            long ok = results.stream().filter(Header::ok).count();
+            System.out.printf("逐个 BufferedReader: %7.1f ms（非空首行 %d 个）%n", legacy / 1e6, legacyCount);
+            System.out.printf("批量嗅探:            %7.1f ms（成功 %d 个）%n", batch / 1e6, ok);
+            System.out.println("示例结果:");
+            results.subList(0, 4).forEach(h -> System.out.println("  " + h));
+            System.out.println("  " + results.get(results.size() - 1));
+        } finally {
+            executor.shutdown();
+        }
+
+        for (Path p : paths) {
+            Files.deleteIfExists(p);
+        }
+        Files.delete(dir);
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. 每个线程复用一个小缓冲区，不再为每个文件创建 BufferedReader");
+        System.out.println("2. 只读前几百字节、只解码第一行");
+        System.out.println("3. 固定大小的线程池限制同时打开的文件数，通道仍由 try-with-resources 关闭");
+    }
+}
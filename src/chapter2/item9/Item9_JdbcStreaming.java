@@ -0,0 +1,437 @@
+package chapter2.item9;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 演示 Effective Java 第9条：流式 JDBC 查询与 PreparedStatement 缓存
+ *
+ * Item9_RealWorld.DatabaseExample.query() 每次调用都新建 Connection 和 Statement，
+ * 逐行遍历 ResultSet，也没有控制 fetchSize。
+ *
+ * 改进：
+ * 1. 每个连接一个 StatementCache，按 SQL 文本缓存 PreparedStatement（LRU，淘汰时关闭）；
+ *    语句通过 Lease 借出，借出期间被固定：LRU 淘汰推迟到归还时才关闭，
+ *    同一条 SQL 重入（例如在批次回调里再查一次）时临时准备一条新语句，不会关掉正在读取的 ResultSet
+ * 2. 设置 fetchSize，让驱动分批从服务端取数据，而不是一次全部加载
+ * 3. 结果按列存放在可复用的 ColumnBatch 中，每批回调一次，不为每行创建对象；
+ *    DECIMAL / NUMERIC 按 BigDecimal 保存，不丢精度
+ * 4. 批量插入使用 addBatch / executeBatch，任何异常都会回滚
+ *
+ * 资源层次依然由 try-with-resources 管理：QueryHelper -> StatementCache -> Lease -> ResultSet
+ *
+ * 注意：不同驱动开启流式读取的方式不同，例如 PostgreSQL 需要关闭自动提交，
+ * MySQL 需要 fetchSize = Integer.MIN_VALUE 或 useCursorFetch=true。
+ * 运行 main() 需要类路径上有嵌入式数据库驱动，本仓库不引入依赖；例如用 H2：
+ *   java -cp .:h2.jar chapter2.item9.Item9_JdbcStreaming
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_JdbcStreaming {
+
+    /**
+     * 按 SQL 文本缓存 PreparedStatement，绑定在单个连接上
+     */
+    static final class StatementCache implements AutoCloseable {
+        private final Connection conn;
+        private final Map<String, Entry> cache;
+        private int hits;
+        private int misses;
+
+        private static final class Entry {
+            final PreparedStatement statement;
+            boolean inUse;      // 已借出，ResultSet 可能还在读取
+            boolean retired;    // 已不在缓存中（被淘汰或是临时语句），归还时关闭
+
+            Entry(PreparedStatement statement) {
+                this.statement = statement;
+            }
+        }
+
+        /**
+         * 借出的语句：归还（close）之前不会被缓存关闭
+         */
+        final class Lease implements AutoCloseable {
+            private final Entry entry;
+            private boolean released;
+
+            private Lease(Entry entry) {
+                this.entry = entry;
+            }
+
+            PreparedStatement statement() { return entry.statement; }
+
+            @Override
+            public void close() throws SQLException {
+                if (released) return;
+                released = true;
+                entry.inUse = false;
+                if (entry.retired) entry.statement.close();
+            }
+        }
+
+        StatementCache(Connection conn, int maxSize) {
+            this.conn = conn;
+            // LRU：超过容量时关闭最久未使用的语句；正在使用的语句等归还时再关闭
+            this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() <= maxSize) return false;
+                    Entry e = eldest.getValue();
+                    e.retired = true;
+                    if (!e.inUse) {
+                        try {
+                            e.statement.close();
+                        } catch (SQLException ex) {
+                            System.err.println("关闭被淘汰的语句失败: " + ex.getMessage());
+                        }
+                    }
+                    return true;
+                }
+            };
+        }
+
+        Lease acquire(String sql) throws SQLException {
+            Entry e = cache.get(sql);
+            if (e != null && !e.inUse && !e.statement.isClosed()) {
+                hits++;
+                e.statement.clearParameters();
+                e.inUse = true;
+                return new Lease(e);
+            }
+            misses++;
+            Entry fresh = new Entry(conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY));
+            if (e != null && e.inUse) {
+                fresh.retired = true;   // 同一条 SQL 正在使用：临时语句，归还时关闭
+            } else {
+                cache.put(sql, fresh);
+            }
+            fresh.inUse = true;
+            return new Lease(fresh);
+        }
+
+        int hits() { return hits; }
+
+        int misses() { return misses; }
+
+        /**
+         * 关闭所有缓存的语句；与 try-with-resources 一致，后续异常作为被抑制的异常附加
+         */
+        @Override
+        public void close() throws SQLException {
+            SQLException first = null;
+            for (Entry e : cache.values()) {
+                try {
+                    e.statement.close();
+                } catch (SQLException ex) {
+                    if (first == null) first = ex;
+                    else first.addSuppressed(ex);
+                }
+            }
+            cache.clear();
+            if (first != null) throw first;
+        }
+    }
+
+    /**
+     * 可复用的列式批次：数值列存放在基本类型数组中
+     */
+    static final class ColumnBatch {
+        private final String[] names;
+        private final int[] kinds;        // 每列的存储方式
+        private final long[][] longs;
+        private final double[][] doubles;
+        private final Object[][] objects;
+        private final boolean[][] nulls;
+        private final int capacity;
+        private int size;
+
+        private static final int LONG = 0, DOUBLE = 1, DECIMAL = 2, OBJECT = 3;
+
+        ColumnBatch(ResultSetMetaData meta, int capacity) throws SQLException {
+            int columns = meta.getColumnCount();
+            this.capacity = capacity;
+            this.names = new String[columns];
+            this.kinds = new int[columns];
+            this.longs = new long[columns][];
+            this.doubles = new double[columns][];
+            this.objects = new Object[columns][];
+            this.nulls = new boolean[columns][capacity];
+            for (int c = 0; c < columns; c++) {
+                names[c] = meta.getColumnLabel(c + 1);
+                kinds[c] = kindOf(meta.getColumnType(c + 1));
+                if (kinds[c] == LONG) longs[c] = new long[capacity];
+                else if (kinds[c] == DOUBLE) doubles[c] = new double[capacity];
+                else objects[c] = new Object[capacity];
+            }
+        }
+
+        private static int kindOf(int sqlType) {
+            switch (sqlType) {
+                case Types.TINYINT: case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+                    return LONG;
+                case Types.REAL: case Types.FLOAT: case Types.DOUBLE:
+                    return DOUBLE;
+                case Types.DECIMAL: case Types.NUMERIC:
+                    return DECIMAL;   // 定点数转成 double 会丢精度
+                default:
+                    return OBJECT;
+            }
+        }
+
+        void add(ResultSet rs) throws SQLException {
+            for (int c = 0; c < kinds.length; c++) {
+                if (kinds[c] == LONG) longs[c][size] = rs.getLong(c + 1);
+                else if (kinds[c] == DOUBLE) doubles[c][size] = rs.getDouble(c + 1);
+                else if (kinds[c] == DECIMAL) objects[c][size] = rs.getBigDecimal(c + 1);
+                else objects[c][size] = rs.getObject(c + 1);
+                nulls[c][size] = rs.wasNull();
+            }
+            size++;
+        }
+
+        boolean isFull() { return size == capacity; }
+
+        // 复用：只重置行数，不释放数组
+        void reset() {
+            for (Object[] column : objects) {
+                if (column != null) Arrays.fill(column, 0, size, null);
+            }
+            size = 0;
+        }
+
+        int size() { return size; }
+
+        int columnIndex(String name) {
+            for (int c = 0; c < names.length; c++) {
+                if (names[c].equalsIgnoreCase(name)) return c;
+            }
+            throw new IllegalArgumentException("没有列: " + name);
+        }
+
+        long getLong(int column, int row) { return longs[column][row]; }
+
+        // DECIMAL 列也可以按 double 读取，但这是调用方明确选择的有损转换；要精确值用 getBigDecimal()
+        double getDouble(int column, int row) {
+            if (kinds[column] == LONG) return longs[column][row];
+            if (kinds[column] == DECIMAL) return nulls[column][row] ? 0 : ((BigDecimal) objects[column][row]).doubleValue();
+            return doubles[column][row];
+        }
+
+        BigDecimal getBigDecimal(int column, int row) {
+            if (nulls[column][row]) return null;
+            if (kinds[column] == LONG) return BigDecimal.valueOf(longs[column][row]);
+            if (kinds[column] == DOUBLE) return BigDecimal.valueOf(doubles[column][row]);
+            if (kinds[column] == DECIMAL) return (BigDecimal) objects[column][row];
+            throw new IllegalArgumentException("不是数值列: " + names[column]);
+        }
+
+        Object getObject(int column, int row) {
+            if (nulls[column][row]) return null;
+            if (kinds[column] == LONG) return longs[column][row];
+            if (kinds[column] == DOUBLE) return doubles[column][row];
+            return objects[column][row];
+        }
+
+        boolean isNull(int column, int row) { return nulls[column][row]; }
+    }
+
+    /**
+     * 批次回调：回调返回后批次会被复用，不要保存它的引用
+     */
+    @FunctionalInterface
+    interface BatchHandler {
+        void handle(ColumnBatch batch) throws SQLException;
+    }
+
+    /**
+     * 查询助手：持有一个连接及其语句缓存
+     */
+    static final class QueryHelper implements AutoCloseable {
+        private final Connection conn;
+        private final StatementCache statements;
+
+        QueryHelper(Connection conn, int statementCacheSize) {
+            this.conn = conn;
+            this.statements = new StatementCache(conn, statementCacheSize);
+        }
+
+        /**
+         * 流式查询，返回总行数
+         */
+        long query(String sql, int fetchSize, int batchRows, BatchHandler handler, Object... params)
+                throws SQLException {
+            long rows = 0;
+            try (StatementCache.Lease lease = statements.acquire(sql)) {
+                PreparedStatement ps = lease.statement();
+                ps.setFetchSize(fetchSize);
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, params[i]);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    ColumnBatch batch = new ColumnBatch(rs.getMetaData(), batchRows);
+                    while (rs.next()) {
+                        batch.add(rs);
+                        rows++;
+                        if (batch.isFull()) {
+                            handler.handle(batch);
+                            batch.reset();
+                        }
+                    }
+                    if (batch.size() > 0) handler.handle(batch);
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * 批量插入：每 batchSize 行执行一次，整体在一个事务中
+         */
+        int insertBatch(String sql, List<Object[]> rows, int batchSize) throws SQLException {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (StatementCache.Lease lease = statements.acquire(sql)) {
+                PreparedStatement ps = lease.statement();
+                int pending = 0;
+                int inserted = 0;
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        ps.setObject(i + 1, row[i]);
+                    }
+                    ps.addBatch();
+                    if (++pending == batchSize) {
+                        inserted += sum(ps.executeBatch());
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) inserted += sum(ps.executeBatch());
+                conn.commit();
+                return inserted;
+            } catch (Throwable t) {
+                // 不只是 SQLException：否则 finally 中恢复自动提交会把已执行的部分批次提交掉
+                try {
+                    conn.rollback();
+                } catch (SQLException e) {
+                    t.addSuppressed(e);
+                }
+                throw t;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        private static int sum(int[] counts) {
+            int total = 0;
+            for (int c : counts) {
+                // SUCCESS_NO_INFO 表示成功但驱动不报告行数
+                total += c == Statement.SUCCESS_NO_INFO ? 1 : Math.max(c, 0);
+            }
+            return total;
+        }
+
+        StatementCache statements() { return statements; }
+
+        // 先关语句再关连接：与 try-with-resources 的逆序关闭一致
+        @Override
+        public void close() throws SQLException {
+            SQLException failure = null;
+            try {
+                statements.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("=== 流式 JDBC 查询与语句缓存 ===\n");
+
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:zoo";
+        try (QueryHelper db = new QueryHelper(DriverManager.getConnection(url), 32)) {
+            try (Statement ddl = db.conn.createStatement()) {
+                ddl.execute("CREATE TABLE animal (id BIGINT PRIMARY KEY, species VARCHAR(20), weight DOUBLE, "
+                        + "daily_cost DECIMAL(10, 2))");
+            }
+
+            String[] species = {"dog", "cat", "bird"};
+            List<Object[]> rows = new ArrayList<>();
+            for (long id = 0; id < 100_000; id++) {
+                rows.add(new Object[]{id, species[(int) (id % 3)], 1.0 + id % 50, BigDecimal.valueOf(id % 100 + 10, 2)});
+            }
+            long start = System.nanoTime();
+            int inserted = db.insertBatch("INSERT INTO animal VALUES (?, ?, ?, ?)", rows, 1_000);
+            System.out.printf("批量插入 %d 行: %.1f ms%n", inserted, (System.nanoTime() - start) / 1e6);
+
+            // 同一条 SQL 查询多次：只 prepare 一次
+            for (String s : species) {
+                double[] total = new double[1];
+                BigDecimal[] cost = {BigDecimal.ZERO};
+                long count = db.query("SELECT id, weight, daily_cost FROM animal WHERE species = ?", 500, 1_024, batch -> {
+                    int weight = batch.columnIndex("weight");
+                    int dailyCost = batch.columnIndex("daily_cost");
+                    for (int r = 0; r < batch.size(); r++) {
+                        total[0] += batch.getDouble(weight, r);   // 基本类型数组上的紧凑循环
+                        cost[0] = cost[0].add(batch.getBigDecimal(dailyCost, r));   // 金额按定点数精确累加
+                    }
+                }, s);
+                System.out.printf("  %-4s %6d 只，平均体重 %.2f kg，每日饲养费合计 %s 元%n", s, count, total[0] / count, cost[0]);
+            }
+            StatementCache cache = db.statements();
+            System.out.println("语句缓存命中 " + cache.hits() + " 次，未命中 " + cache.misses() + " 次");
+
+            // 语句固定：外层查询还在流式读取时，同一条 SQL 重入和 LRU 淘汰都不会关闭它的语句
+            try (QueryHelper tiny = new QueryHelper(DriverManager.getConnection(url), 1)) {
+                String sql = "SELECT id FROM animal WHERE species = ?";
+                long[] nested = new long[1];
+                long outer = tiny.query(sql, 100, 256, batch -> {
+                    if (nested[0] == 0) {
+                        nested[0] += tiny.query(sql, 100, 256, b -> { }, "cat");                         // 同一条 SQL 重入
+                        nested[0] += tiny.query("SELECT id FROM animal WHERE id < 10", 100, 256, b -> { });   // 容量为 1，挤掉外层语句
+                    }
+                }, "dog");
+                System.out.printf("外层流式读取 %d 行，期间内层查询 %d 行，外层结果集未被关闭%n", outer, nested[0]);
+            }
+
+            // 行是延迟映射出来的，第 3 行映射时抛出运行时异常：前两批已执行，也要整体回滚
+            List<Object[]> bad = new AbstractList<>() {
+                @Override
+                public Object[] get(int i) {
+                    if (i == 2) throw new IllegalStateException("第 3 行映射失败");
+                    return new Object[]{1_000_000L + i, "dog", 1.0, BigDecimal.ONE};
+                }
+
+                @Override
+                public int size() { return 3; }
+            };
+            try {
+                db.insertBatch("INSERT INTO animal VALUES (?, ?, ?, ?)", bad, 1);
+            } catch (SQLException | RuntimeException e) {
+                long[] left = new long[1];
+                db.query("SELECT COUNT(*) FROM animal WHERE id >= 1000000", 1, 1, b -> left[0] = b.getLong(0, 0));
+                System.out.println("批量插入失败（" + e.getClass().getSimpleName() + "），已回滚，残留 " + left[0] + " 行");
+            }
+        } catch (SQLException e) {
+            System.out.println("⚠️  无法连接 " + url + ": " + e.getMessage());
+            System.out.println("   请把嵌入式数据库驱动（如 H2）加入类路径，或通过参数传入 JDBC URL");
+        }
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. PreparedStatement 按 SQL 缓存，缓存关闭时统一关闭语句");
+        System.out.println("2. fetchSize 控制每次从服务端取回的行数");
+        System.out.println("3. 列式批次复用基本类型数组，不为每行创建对象");
+        System.out.println("4. 关闭顺序：ResultSet -> PreparedStatement -> Connection");
+    }
+}
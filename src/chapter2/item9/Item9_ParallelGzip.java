@@ -0,0 +1,347 @@
+package chapter2.item9;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * 演示 Effective Java 第9条：并行 gzip 压缩与流水线解压
+ *
+ * GZIPOutputStream 只能用一个核压缩。本示例参考 pigz 的做法：
+ * 1. 把输入切成 128KB 的块，多个线程各自用原始 Deflater 压缩
+ * 2. 非最后一块用 SYNC_FLUSH 结束，输出按字节对齐，可以直接拼接
+ * 3. 每块用前一块末尾 32KB 作为预设字典，压缩率几乎不受影响
+ * 4. 写入线程按顺序拼接各块，补上 gzip 头和 CRC32/长度尾，得到一个合法的 gzip 流
+ *
+ * 解压无法按块并行（deflate 块边界未知），但可以让读取 I/O 和 inflate 流水线化：
+ * 后台线程读取压缩数据放入有界队列，当前线程专心 inflate。
+ *
+ * 两个类都是普通的 OutputStream / InputStream，可以直接放进 try-with-resources。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_ParallelGzip {
+
+    /**
+     * 并行 gzip 输出流
+     */
+    static final class ParallelGzipOutputStream extends OutputStream {
+        static final int BLOCK_SIZE = 128 * 1024;
+        private static final int DICT_SIZE = 32 * 1024;
+        // gzip 头：魔数、deflate、无标志、无时间戳、无额外标志、未知系统
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final OutputStream out;
+        private final ExecutorService pool;
+        private final int maxInFlight;
+        private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        private final CRC32 crc = new CRC32();
+        private long totalIn;
+        private byte[] block = new byte[BLOCK_SIZE];
+        private int count;
+        private byte[] dictionary;
+        private boolean closed;
+
+        ParallelGzipOutputStream(OutputStream out, int threads) throws IOException {
+            this.out = out;
+            this.pool = Executors.newFixedThreadPool(threads);
+            this.maxInFlight = threads * 2;   // 限制在途块数，内存有上界
+            out.write(HEADER);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            block[count++] = (byte) b;
+            if (count == BLOCK_SIZE) submitBlock(false);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, BLOCK_SIZE - count);
+                System.arraycopy(b, off, block, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == BLOCK_SIZE) submitBlock(false);
+            }
+        }
+
+        private void submitBlock(boolean last) throws IOException {
+            byte[] data = block;
+            int length = count;
+            byte[] dict = dictionary;
+            crc.update(data, 0, length);   // CRC32 必须按顺序计算，放在提交线程上
+            totalIn += length;
+            dictionary = length >= DICT_SIZE ? Arrays.copyOfRange(data, length - DICT_SIZE, length) : null;
+
+            inFlight.addLast(pool.submit(() -> deflate(data, length, dict, last)));
+            block = new byte[BLOCK_SIZE];
+            count = 0;
+            if (inFlight.size() >= maxInFlight) {
+                writeNext();
+            }
+        }
+
+        private static byte[] deflate(byte[] data, int length, byte[] dict, boolean last) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);   // 原始 deflate，无 zlib 头
+            try {
+                if (dict != null) deflater.setDictionary(dict);
+                deflater.setInput(data, 0, length);
+                ByteArrayOutputStream result = new ByteArrayOutputStream(length / 2 + 64);
+                byte[] buf = new byte[64 * 1024];
+                if (last) {
+                    deflater.finish();   // 最后一块设置 BFINAL
+                    while (!deflater.finished()) {
+                        result.write(buf, 0, deflater.deflate(buf));
+                    }
+                } else {
+                    int n;
+                    do {   // SYNC_FLUSH：输出填满缓冲区时需要再调用一次
+                        n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                        result.write(buf, 0, n);
+                    } while (n == buf.length);
+                }
+                return result.toByteArray();
+            } finally {
+                deflater.end();   // 释放本地内存，不依赖终结方法（第8条）
+            }
+        }
+
+        private void writeNext() throws IOException {
+            try {
+                out.write(inFlight.removeFirst().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("压缩被中断");
+            } catch (ExecutionException e) {
+                throw new IOException("块压缩失败", e.getCause());
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * 提交最后一块、写出所有块和 gzip 尾，再关闭底层流
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try (OutputStream o = out) {
+                submitBlock(true);
+                while (!inFlight.isEmpty()) {
+                    writeNext();
+                }
+                writeIntLE(o, (int) crc.getValue());
+                writeIntLE(o, (int) totalIn);   // ISIZE：原始长度模 2^32
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        private static void writeIntLE(OutputStream o, int v) throws IOException {
+            o.write(v);
+            o.write(v >>> 8);
+            o.write(v >>> 16);
+            o.write(v >>> 24);
+        }
+    }
+
+    /**
+     * 流水线 gzip 输入流：后台线程读取压缩数据，当前线程 inflate
+     */
+    static final class PipelinedGzipInputStream extends InputStream {
+        static final int CHUNK_SIZE = 1024 * 1024;
+        private static final Chunk EOF = new Chunk(new byte[0], 0, null);
+
+        private final InputStream raw;
+        private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(4);
+        private final Thread reader;
+        private final GZIPInputStream gzip;
+
+        PipelinedGzipInputStream(InputStream raw) throws IOException {
+            this.raw = raw;
+            this.reader = new Thread(this::readLoop, "gzip-reader");
+            reader.setDaemon(true);
+            reader.start();
+            this.gzip = new GZIPInputStream(new QueueInputStream(), 64 * 1024);
+        }
+
+        private void readLoop() {
+            try {
+                while (true) {
+                    byte[] buf = new byte[CHUNK_SIZE];
+                    int n = raw.readNBytes(buf, 0, CHUNK_SIZE);
+                    if (n == 0) {
+                        queue.put(EOF);
+                        return;
+                    }
+                    queue.put(new Chunk(buf, n, null));   // 队列满时阻塞，读取不会跑得太远
+                }
+            } catch (IOException | RuntimeException e) {
+                IOException error = e instanceof IOException ? (IOException) e : new IOException("读取压缩数据失败", e);
+                try {
+                    queue.put(new Chunk(null, 0, error));   // 不能用 offer()：队列满时错误会丢失，消费方永远阻塞
+                } catch (InterruptedException ignored) {
+                    // close() 中断了读取线程，已经没有消费方
+                }
+            } catch (InterruptedException e) {
+                // close() 中断了读取线程
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            return gzip.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return gzip.read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.interrupt();
+            try {
+                gzip.close();
+            } finally {
+                raw.close();
+            }
+        }
+
+        private static final class Chunk {
+            final byte[] data;
+            final int length;
+            final IOException error;
+
+            Chunk(byte[] data, int length, IOException error) {
+                this.data = data;
+                this.length = length;
+                this.error = error;
+            }
+        }
+
+        /**
+         * 把队列中的块拼成一个 InputStream，交给 GZIPInputStream
+         */
+        private final class QueueInputStream extends InputStream {
+            private Chunk current;
+            private int pos;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (current == EOF) return -1;
+                if (current != null && current.error != null) throw current.error;   // 出错后一直失败，不再阻塞在空队列上
+                if (current == null || pos == current.length) {
+                    try {
+                        current = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("解压被中断");
+                    }
+                    pos = 0;
+                    if (current.error != null) throw current.error;
+                    if (current == EOF) return -1;
+                }
+                int n = Math.min(len, current.length - pos);
+                System.arraycopy(current.data, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+        }
+    }
+
+    // ==================== 基准测试 ====================
+
+    private static long compress(Path src, Path dst, boolean parallel, int threads) throws IOException {
+        long start = System.nanoTime();
+        try (InputStream in = Files.newInputStream(src);
+             OutputStream out = parallel
+                     ? new ParallelGzipOutputStream(new BufferedOutputStream(Files.newOutputStream(dst), 1 << 16), threads)
+                     : new GZIPOutputStream(Files.newOutputStream(dst), 1 << 16)) {
+            in.transferTo(out);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long decompress(Path src, Path dst, boolean pipelined) throws IOException {
+        long start = System.nanoTime();
+        try (InputStream in = pipelined
+                     ? new PipelinedGzipInputStream(Files.newInputStream(src))
+                     : new GZIPInputStream(Files.newInputStream(src), 1 << 16);
+             OutputStream out = Files.newOutputStream(dst)) {
+            in.transferTo(out);
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== 并行 gzip 压缩 / 流水线解压 ===\n");
+
+        Path dir = Files.createTempDirectory("item9-gzip");
+        Path input = dir.resolve("animals.log");
+        Path gz = dir.resolve("animals.log.gz");
+        Path pgz = dir.resolve("animals.log.pgz");
+        Path restored = dir.resolve("restored.log");
+
+        // 生成约 32MB 的日志，可压缩但不过于重复
+        try (BufferedWriter w = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String[] animals = {"dog", "cat", "bird", "panda", "tiger"};
+            while (Files.size(input) < 32L << 20) {
+                for (int i = 0; i < 10_000; i++) {
+                    w.write(animals[random.nextInt(animals.length)] + " id=" + random.nextInt(1_000_000)
+                            + " weight=" + random.nextInt(500) + "kg fed=true\n");
+                }
+                w.flush();
+            }
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println("输入大小: " + (Files.size(input) >> 20) + " MB，线程数: " + threads);
+
+        long gzipTime = compress(input, gz, false, threads);
+        long pigzTime = compress(input, pgz, true, threads);
+        System.out.printf("压缩 GZIPOutputStream:     %7.1f ms  -> %,d 字节%n", gzipTime / 1e6, Files.size(gz));
+        System.out.printf("压缩 并行 gzip:            %7.1f ms  -> %,d 字节%n", pigzTime / 1e6, Files.size(pgz));
+
+        decompress(pgz, restored, false);   // 校验，不计时
+        boolean validForJdk = Files.mismatch(input, restored) == -1;
+
+        // 两种解压都处理同一个 .gz 文件
+        long gunzipTime = decompress(gz, restored, false);
+        long pipelinedTime = decompress(gz, restored, true);
+        boolean validPipelined = Files.mismatch(input, restored) == -1;
+        System.out.printf("解压 GZIPInputStream:      %7.1f ms%n", gunzipTime / 1e6);
+        System.out.printf("解压 流水线:               %7.1f ms（同一个 .gz 文件）%n", pipelinedTime / 1e6);
+        System.out.println("并行压缩结果可被 GZIPInputStream 还原: " + validForJdk);
+        System.out.println("流水线解压结果正确: " + validPipelined);
+
+        for (Path p : new Path[]{input, gz, pgz, restored}) {
+            Files.delete(p);
+        }
+        Files.delete(dir);
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. 块之间用 SYNC_FLUSH 对齐，拼接后仍是一个合法的 deflate 流");
+        System.out.println("2. 前一块末尾 32KB 作为字典，保持压缩率");
+        System.out.println("3. 解压把 I/O 和 inflate 放在不同线程上流水线执行");
+        System.out.println("4. Deflater 用完立即 end()，流由 try-with-resources 关闭");
+    }
+}
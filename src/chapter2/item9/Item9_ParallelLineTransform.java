@@ -0,0 +1,219 @@
+package chapter2.item9;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 演示 Effective Java 第9条：并行的内存映射行转换管道
+ *
+ * Item9_RealWorld.processFiles() 单线程逐行读取，每行都创建 String 再 toUpperCase，
+ * 处理几十 GB 的日志时非常慢。本示例的改进：
+ * 1. 内存映射输入文件，不经过 Reader 的字符缓冲区
+ * 2. 按换行符对齐切分成块，每块包含完整的行
+ * 3. 多线程并行转换，纯 ASCII 的块直接在字节上转换，不为每行创建 String
+ * 4. 写入线程按原始顺序写出结果，并限制同时在途的块数，避免内存无限增长
+ *
+ * 注意：输入按 UTF-8 解释；遇到非 ASCII 字节的块回退到 String.toUpperCase()，
+ * 保证结果与原实现一致。String.toUpperCase() 使用默认区域，土耳其语等区域中 'i' 会变成 'İ'，
+ * 这时 ASCII 快速路径整体关闭，所有块都走 String。与原实现的差别是保留原始换行符，且不为末行补换行。
+ *
+ * 每块的映射没有公开的 API 可以立即解除，要等 MappedByteBuffer 被 GC 回收时才释放。
+ * 块转换完就不再引用映射，在途块数又有上限，所以同时存活的映射有限；
+ * 但在 Windows 上，映射释放之前不能删除或截断输入文件。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_ParallelLineTransform {
+
+    // 每块的目标大小，实际大小会延伸到下一个换行符
+    static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    // 寻找换行符时每次读取的字节数
+    private static final int SCAN_SIZE = 8 * 1024;
+
+    /**
+     * 并行转换：输入文件 -> 每块转大写 -> 按顺序写出
+     */
+    static void processFiles(String inputPath, String outputPath) throws IOException {
+        processFiles(Path.of(inputPath), Path.of(outputPath), CHUNK_SIZE,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    static void processFiles(Path input, Path output, int chunkSize, int threads) throws IOException {
+        boolean asciiFastPath = asciiUpperCaseIsPlain(Locale.getDefault());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel in = FileChannel.open(input, READ);
+             FileChannel out = FileChannel.open(output, CREATE, WRITE, TRUNCATE_EXISTING)) {
+
+            List<long[]> chunks = splitAtNewlines(in, chunkSize);
+            // 在途块数上限：保证转换线程始终有活干，同时限制内存占用
+            int window = threads * 2;
+            Deque<CompletableFuture<ByteBuffer>> inFlight = new ArrayDeque<>();
+
+            for (long[] chunk : chunks) {
+                if (inFlight.size() == window) {
+                    writeFully(out, join(inFlight.removeFirst()));
+                }
+                inFlight.addLast(CompletableFuture.supplyAsync(() -> transform(in, chunk[0], chunk[1], asciiFastPath), pool));
+            }
+            while (!inFlight.isEmpty()) {
+                writeFully(out, join(inFlight.removeFirst()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 按换行符对齐切块：从每个名义边界向后扫描到下一个 '\n'
+     * 返回每块的 [起始, 结束) 偏移
+     */
+    static List<long[]> splitAtNewlines(FileChannel in, int chunkSize) throws IOException {
+        long size = in.size();
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            end = nextLineStart(in, end, size, scan);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel in, long pos, long size, ByteBuffer scan) throws IOException {
+        while (pos < size) {
+            scan.clear();
+            int n = in.read(scan, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (scan.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    // 该区域下 String.toUpperCase() 对 ASCII 字母是否就是简单的 a-z -> A-Z
+    static boolean asciiUpperCaseIsPlain(Locale locale) {
+        return "abcdefghijklmnopqrstuvwxyz".toUpperCase(locale).equals("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
+    }
+
+    /**
+     * 转换一块：ASCII 快速路径直接改字节，遇到非 ASCII 字节才回退到 String
+     * 映射只在本方法内使用，返回后即不可达，等待 GC 释放
+     */
+    static ByteBuffer transform(FileChannel in, long from, long to, boolean asciiFastPath) {
+        MappedByteBuffer src;
+        try {
+            src = in.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!asciiFastPath) {
+            return transformSlow(src);
+        }
+        int len = src.remaining();
+        byte[] dst = new byte[len];
+        for (int i = 0; i < len; i++) {
+            byte b = src.get(i);
+            if (b < 0) {
+                return transformSlow(src);   // 非 ASCII：交给 String.toUpperCase 处理
+            }
+            // 'a'..'z' 与 'A'..'Z' 只差 0x20
+            dst[i] = (b >= 'a' && b <= 'z') ? (byte) (b - 32) : b;
+        }
+        return ByteBuffer.wrap(dst);
+    }
+
+    // 与 BufferedReader 一样，遇到非法的 UTF-8 字节报错，而不是悄悄替换成 U+FFFD
+    private static ByteBuffer transformSlow(MappedByteBuffer src) {
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder().decode(src.duplicate()).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(text.toUpperCase().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ByteBuffer join(CompletableFuture<ByteBuffer> f) throws IOException {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== 并行内存映射行转换 ===\n");
+
+        Path dir = Files.createTempDirectory("item9-transform");
+        Path input = dir.resolve("input.log");
+        Path legacyOut = dir.resolve("legacy.log");
+        Path parallelOut = dir.resolve("parallel.log");
+
+        // 生成测试日志：约 100 万行，混入少量中文行以覆盖回退路径
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1_000_000; i++) {
+            sb.append(i % 50_000 == 0 ? "狗狗 dog 正在吃饭 " : "info: animal fed, id=").append(i).append('\n');
+        }
+        Files.writeString(input, sb.toString(), StandardCharsets.UTF_8);
+        System.out.println("输入大小: " + Files.size(input) / 1024 + " KB");
+
+        long start = System.nanoTime();
+        Item9_RealWorld.processFiles(input.toString(), legacyOut.toString());
+        long legacy = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        processFiles(input, parallelOut, 1024 * 1024, Runtime.getRuntime().availableProcessors());
+        long parallel = System.nanoTime() - start;
+
+        boolean same = Files.readString(parallelOut, StandardCharsets.UTF_8)
+                .equals(Files.readString(legacyOut, StandardCharsets.UTF_8)
+                        .replace(System.lineSeparator(), "\n"));
+        System.out.printf("逐行 BufferedReader: %.1f ms%n", legacy / 1e6);
+        System.out.printf("并行内存映射:        %.1f ms%n", parallel / 1e6);
+        System.out.println("结果一致: " + same);
+
+        for (Path p : new Path[]{input, legacyOut, parallelOut, dir}) {
+            try {
+                Files.delete(p);
+            } catch (IOException e) {
+                p.toFile().deleteOnExit();   // 输入仍被映射（Windows）：退出时再删
+            }
+        }
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. 按换行符对齐切块，每块可以独立并行处理");
+        System.out.println("2. ASCII 快速路径直接转换字节，不为每行创建 String");
+        System.out.println("3. 写入按原始顺序进行，在途块数有上限");
+        System.out.println("4. 通道和线程池依然由 try-with-resources / finally 负责释放");
+    }
+}
@@ -16,6 +16,7 @@ public class Item9_RealWorld {
     /**
      * 场景1：数据库操作（模拟）
      * 需要关闭 Connection、Statement、ResultSet
+     * （语句缓存与流式读取见 Item9_JdbcStreaming）
      */
     static class DatabaseExample {
         
@@ -77,6 +78,7 @@ public class Item9_RealWorld {
 
     /**
      * 场景3：自定义缓存管理器
+     * （真正持久化的两级缓存见 Item9_TieredCache）
      */
     static class CacheManager implements AutoCloseable {
         private final String cacheName;
@@ -119,6 +121,7 @@ public class Item9_RealWorld {
 
     /**
      * 场景4：文件批量处理
+     * （大文件的并行版本见 Item9_ParallelLineTransform）
      */
     static void processFiles(String inputPath, String outputPath) throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(inputPath));
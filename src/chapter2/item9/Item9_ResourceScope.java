@@ -0,0 +1,246 @@
+package chapter2.item9;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 演示 Effective Java 第9条：按依赖关系并行关闭大量资源
+ *
+ * Item9_CustomResource.feedMultipleTypes() 依赖 try-with-resources 逆序、串行地关闭资源。
+ * 当有上百个互不相关、且 close() 需要刷盘的资源（缓存、病历文件）时，关闭要几十秒。
+ *
+ * ResourceScope 的做法：
+ * 1. 注册资源时声明它依赖哪些资源（依赖者必须先关闭，和 try-with-resources 的逆序一致）
+ * 2. 关闭时所有"没有依赖者"的资源并行关闭，每关闭一个就释放它的依赖
+ * 3. 异常语义与 try-with-resources 一致：按注册的逆序取第一个异常为主异常，其余作为 suppressed
+ * 4. 整体关闭有截止时间，超时的资源会在异常中列出
+ *
+ * close() 只声明 IOException（不声明 Exception，try-with-resources 里就不会被要求处理 InterruptedException）：
+ * 资源抛出的 IOException 和运行时异常原样抛出，其他受检异常包装成 IOException。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_ResourceScope {
+
+    static final class ResourceScope implements AutoCloseable {
+
+        private static final class Node {
+            final String name;
+            final AutoCloseable resource;
+            final int order;                                  // 注册顺序
+            final List<Node> dependencies;                    // 本资源依赖的资源
+            final AtomicInteger openDependents = new AtomicInteger();  // 还没关闭的依赖者数量
+            volatile boolean done;                            // 关闭已结束（成功、失败或被线程池拒绝）
+            volatile Exception failure;
+
+            Node(String name, AutoCloseable resource, int order, List<Node> dependencies) {
+                this.name = name;
+                this.resource = resource;
+                this.order = order;
+                this.dependencies = dependencies;
+            }
+        }
+
+        private final Executor executor;
+        private final long deadlineMillis;
+        private final Map<AutoCloseable, Node> nodes = new IdentityHashMap<>();
+        private final List<Node> ordered = new ArrayList<>();
+        private boolean closed;
+
+        /**
+         * @param executor       执行 close() 的线程池，由调用者负责关闭
+         * @param deadlineMillis 整体关闭的截止时间
+         */
+        ResourceScope(Executor executor, long deadlineMillis) {
+            this.executor = executor;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        /**
+         * 注册资源；dependsOn 必须是已注册的资源，本资源会先于它们关闭。
+         * 同一个资源只能注册一次，否则会被关闭两次。
+         */
+        synchronized <T extends AutoCloseable> T open(String name, T resource, AutoCloseable... dependsOn) {
+            if (closed) throw new IllegalStateException("作用域已关闭");
+            if (nodes.containsKey(resource)) {
+                throw new IllegalArgumentException("资源已注册: " + nodes.get(resource).name);
+            }
+            List<Node> deps = new ArrayList<>(dependsOn.length);
+            for (AutoCloseable d : dependsOn) {
+                Node dep = nodes.get(d);
+                if (dep == null) throw new IllegalArgumentException("依赖的资源未注册: " + d);
+                deps.add(dep);
+            }
+            Node node = new Node(name, resource, ordered.size(), deps);
+            for (Node dep : deps) {
+                dep.openDependents.incrementAndGet();
+            }
+            nodes.put(resource, node);
+            ordered.add(node);
+            return resource;
+        }
+
+        @Override
+        public void close() throws IOException {
+            List<Node> all;
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                all = new ArrayList<>(ordered);
+            }
+            CountDownLatch remaining = new CountDownLatch(all.size());
+            for (Node node : all) {
+                if (node.openDependents.get() == 0) {
+                    submit(node, remaining);
+                }
+            }
+
+            boolean finished;
+            boolean interrupted = false;
+            try {
+                finished = remaining.await(deadlineMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finished = false;
+                interrupted = true;
+            }
+
+            // 按注册的逆序收集异常，与 try-with-resources 的关闭顺序保持一致
+            Exception primary = null;
+            List<String> pending = new ArrayList<>();
+            for (int i = all.size() - 1; i >= 0; i--) {
+                Node node = all.get(i);
+                if (!node.done) {
+                    pending.add(node.name);
+                    continue;
+                }
+                Exception e = node.failure;
+                if (e == null) continue;
+                if (primary == null) primary = e;
+                else primary.addSuppressed(e);
+            }
+            if (!finished) {
+                IOException timeout = interrupted
+                        ? new InterruptedIOException("等待关闭时被中断，未关闭的资源: " + pending)
+                        : new IOException("关闭超过 " + deadlineMillis + " ms，未关闭的资源: " + pending);
+                if (primary == null) primary = timeout;
+                else primary.addSuppressed(timeout);
+            }
+            if (primary == null) return;
+            if (primary instanceof IOException) throw (IOException) primary;
+            if (primary instanceof RuntimeException) throw (RuntimeException) primary;
+            throw new IOException("关闭资源失败", primary);
+        }
+
+        private void submit(Node node, CountDownLatch remaining) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        node.resource.close();
+                    } catch (Exception e) {
+                        node.failure = e;
+                    } finally {
+                        finish(node, remaining);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 线程池拒绝（例如已经 shutdown）：记为该资源关闭失败并照常结束，否则依赖它的一方永远等下去
+                node.failure = new RejectedExecutionException("关闭任务被线程池拒绝，资源未关闭: " + node.name, e);
+                finish(node, remaining);
+            }
+        }
+
+        private void finish(Node node, CountDownLatch remaining) {
+            node.done = true;
+            remaining.countDown();
+            // 依赖者全部结束后，依赖的资源才可以关闭（即使依赖者关闭失败）
+            for (Node dep : node.dependencies) {
+                if (dep.openDependents.decrementAndGet() == 0) {
+                    submit(dep, remaining);
+                }
+            }
+        }
+    }
+
+    /**
+     * 模拟 close() 需要刷盘的资源
+     */
+    static final class FlushingResource implements AutoCloseable {
+        private final String name;
+        private final long flushMillis;
+        private final List<String> closeLog;
+
+        FlushingResource(String name, long flushMillis, List<String> closeLog) {
+            this.name = name;
+            this.flushMillis = flushMillis;
+            this.closeLog = closeLog;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                Thread.sleep(flushMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(name + " 刷盘被中断");
+            }
+            if (name.contains("损坏")) throw new IllegalStateException(name + " 刷盘失败");
+            closeLog.add(name);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== 按依赖关系并行关闭资源 ===\n");
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        try {
+            System.out.println("示例1：依赖顺序（饲料容器依赖动物园）");
+            List<String> log = Collections.synchronizedList(new ArrayList<>());
+            try (ResourceScope scope = new ResourceScope(pool, 5_000)) {
+                FlushingResource zoo = scope.open("动物园", new FlushingResource("动物园", 10, log));
+                scope.open("肉类饲料", new FlushingResource("肉类饲料", 30, log), zoo);
+                scope.open("蔬菜饲料", new FlushingResource("蔬菜饲料", 20, log), zoo);
+            }
+            System.out.println("  关闭顺序: " + log + "（饲料并行关闭，动物园最后）");
+
+            System.out.println("\n示例2：200 个独立资源，每个刷盘 20ms");
+            int count = 200;
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                new FlushingResource("缓存" + i, 20, new ArrayList<>()).close();
+            }
+            long serial = System.nanoTime() - start;
+            start = System.nanoTime();
+            try (ResourceScope scope = new ResourceScope(pool, 10_000)) {
+                for (int i = 0; i < count; i++) {
+                    scope.open("缓存" + i, new FlushingResource("缓存" + i, 20, new ArrayList<>()));
+                }
+            }
+            long parallel = System.nanoTime() - start;
+            System.out.printf("  逆序串行关闭: %.0f ms%n", serial / 1e6);
+            System.out.printf("  并行关闭:     %.0f ms%n", parallel / 1e6);
+
+            System.out.println("\n示例3：异常与截止时间");
+            try (ResourceScope scope = new ResourceScope(pool, 200)) {
+                scope.open("病历A", new FlushingResource("病历A-损坏", 10, log));
+                scope.open("病历B", new FlushingResource("病历B-损坏", 10, log));
+                scope.open("慢速磁盘", new FlushingResource("慢速磁盘", 1_000, log));
+            } catch (Exception e) {
+                System.out.println("  主异常: " + e.getMessage());
+                for (Throwable t : e.getSuppressed()) {
+                    System.out.println("  被抑制: " + t.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. 依赖者先关闭，互不相关的资源并行关闭");
+        System.out.println("2. 主异常 + suppressed 异常，和 try-with-resources 一样不丢失信息");
+        System.out.println("3. 截止时间保证关闭不会无限等待");
+    }
+}
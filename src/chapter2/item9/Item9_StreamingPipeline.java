@@ -0,0 +1,417 @@
+package chapter2.item9;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 演示 Effective Java 第9条：基于 java.util.concurrent.Flow 的流式处理管道
+ *
+ * processFiles() 把"读取 -> 转大写 -> 写入"硬编码在一个循环里。
+ * 本示例把它拆成可组合的阶段：源阶段 -> 若干转换/过滤阶段 -> 汇阶段。
+ *
+ * 要点：
+ * 1. 阶段之间通过有界的 SubmissionPublisher 连接，缓冲区满时 submit() 阻塞，
+ *    背压一路传回源阶段，慢速的汇阶段不会让内存无限增长
+ * 2. 每个阶段在可配置的 Executor 上运行
+ * 3. 每个阶段记录处理条数、吞吐量和输入队列深度
+ * 4. 源和汇本身是资源，依然由 try-with-resources 负责关闭
+ *
+ * 注意：本仓库基于 JDK 17，没有虚拟线程，因此由调用者提供 Executor。
+ * submit() 阻塞时会占用线程，固定大小的线程池至少需要"阶段数 + 1"个线程。
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_StreamingPipeline {
+
+    /**
+     * 源：把数据逐条交给 emitter，通常在内部用 try-with-resources 打开文件
+     */
+    @FunctionalInterface
+    interface Source<T> {
+        void emit(Consumer<? super T> emitter) throws Exception;
+    }
+
+    /**
+     * 汇：接收数据的资源，管道结束（成功或失败）时自动关闭
+     * close() 收窄为 IOException，汇在 try-with-resources 中使用时不必处理 InterruptedException
+     */
+    interface Sink<T> extends AutoCloseable {
+        void accept(T item) throws Exception;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * 每个阶段的运行指标
+     */
+    static final class StageMetrics {
+        private final String name;
+        private final StageMetrics upstream;   // 源阶段没有上游
+        private final LongAdder items = new LongAdder();
+        private final LongAdder emitted = new LongAdder();
+        private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        StageMetrics(String name, StageMetrics upstream) {
+            this.name = name;
+            this.upstream = upstream;
+        }
+
+        void started() {
+            if (startNanos == 0) startNanos = System.nanoTime();
+        }
+
+        void processed() {
+            items.increment();
+            maxQueueDepth.accumulate(queueDepth());
+        }
+
+        void emitted() {
+            emitted.increment();
+        }
+
+        void finished() {
+            endNanos = System.nanoTime();
+        }
+
+        String name() { return name; }
+
+        long items() { return items.sum(); }
+
+        /**
+         * 当前输入队列中等待本阶段处理的条数：上游已发出 - 本阶段已处理
+         * 不使用 SubmissionPublisher.estimateMaximumLag()，它与阻塞中的 submit() 争用同一把锁
+         */
+        long queueDepth() { return upstream == null ? 0 : upstream.emitted.sum() - items.sum(); }
+
+        long maxQueueDepth() { return maxQueueDepth.get(); }
+
+        // 每秒处理条数
+        double throughput() {
+            long start = startNanos;
+            if (start == 0) return 0;
+            long end = endNanos == 0 ? System.nanoTime() : endNanos;
+            return items() * 1e9 / Math.max(1, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s 条数=%-9d 吞吐=%,.0f/s 队列=%d 最大队列=%d",
+                    name, items(), throughput(), queueDepth(), maxQueueDepth());
+        }
+    }
+
+    /**
+     * 管道：每次添加阶段都返回新的 Pipeline，但每个 Pipeline 只能使用一次
+     *
+     * stage() 会立即订阅当前的 tail，to() 会启动源阶段。如果允许从同一个 Pipeline
+     * 派生两次，两条分支会订阅同一个 tail，各自收到全部数据；两次 to() 会启动两次源阶段。
+     * 因此对同一个 Pipeline 第二次调用 stage()/map()/filter()/to() 抛出 IllegalStateException。
+     */
+    static final class Pipeline<T> {
+        private final Executor executor;
+        private final int bufferSize;
+        private final SubmissionPublisher<T> tail;
+        private final List<StageMetrics> metrics;   // 最后一个元素是 tail 所属阶段
+        private final Runnable start;
+        private final AtomicBoolean consumed = new AtomicBoolean();
+
+        private Pipeline(Executor executor, int bufferSize, SubmissionPublisher<T> tail,
+                         List<StageMetrics> metrics, Runnable start) {
+            this.executor = executor;
+            this.bufferSize = bufferSize;
+            this.tail = tail;
+            this.metrics = metrics;
+            this.start = start;
+        }
+
+        /**
+         * 源阶段：在 executor 上运行，submit() 在下游缓冲区满时阻塞
+         */
+        static <T> Pipeline<T> from(String name, Source<T> source, Executor executor, int bufferSize) {
+            SubmissionPublisher<T> out = new SubmissionPublisher<>(executor, bufferSize);
+            StageMetrics m = new StageMetrics(name, null);
+            Runnable start = () -> executor.execute(() -> {
+                m.started();
+                try {
+                    source.emit(item -> {
+                        out.submit(item);
+                        m.processed();
+                        m.emitted();
+                    });
+                    m.finished();
+                    out.close();
+                } catch (Throwable e) {
+                    out.closeExceptionally(e);
+                }
+            });
+            return new Pipeline<>(executor, bufferSize, out, List.of(m), start);
+        }
+
+        /**
+         * 通用阶段：每条输入可以产生零条或多条输出
+         */
+        <R> Pipeline<R> stage(String name, BiConsumer<? super T, Consumer<? super R>> fn) {
+            consume();
+            SubmissionPublisher<R> out = new SubmissionPublisher<>(executor, bufferSize);
+            StageMetrics m = new StageMetrics(name, lastStage());
+            tail.subscribe(new Flow.Subscriber<T>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription s) {
+                    subscription = s;
+                    s.request(bufferSize);
+                }
+
+                @Override
+                public void onNext(T item) {
+                    m.started();
+                    try {
+                        fn.accept(item, result -> {
+                            out.submit(result);
+                            m.emitted();
+                        });
+                    } catch (Throwable e) {
+                        subscription.cancel();
+                        out.closeExceptionally(e);
+                        return;
+                    }
+                    m.processed();
+                    subscription.request(1);   // 处理完一条再要一条
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    out.closeExceptionally(e);
+                }
+
+                @Override
+                public void onComplete() {
+                    m.finished();
+                    out.close();
+                }
+            });
+            return new Pipeline<>(executor, bufferSize, out, append(metrics, m), start);
+        }
+
+        <R> Pipeline<R> map(String name, Function<? super T, ? extends R> fn) {
+            return stage(name, (item, emit) -> emit.accept(fn.apply(item)));
+        }
+
+        Pipeline<T> filter(String name, Predicate<? super T> predicate) {
+            return stage(name, (item, emit) -> {
+                if (predicate.test(item)) emit.accept(item);
+            });
+        }
+
+        /**
+         * 汇阶段：订阅后启动源阶段，返回的 Future 在汇关闭后完成
+         */
+        Execution to(String name, Sink<? super T> sink) {
+            consume();
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            StageMetrics m = new StageMetrics(name, lastStage());
+            tail.subscribe(new Flow.Subscriber<T>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription s) {
+                    subscription = s;
+                    s.request(bufferSize);
+                }
+
+                @Override
+                public void onNext(T item) {
+                    m.started();
+                    try {
+                        sink.accept(item);
+                    } catch (Throwable e) {
+                        subscription.cancel();
+                        fail(e);
+                        return;
+                    }
+                    m.processed();
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    fail(e);
+                }
+
+                @Override
+                public void onComplete() {
+                    m.finished();
+                    try {
+                        sink.close();
+                        done.complete(null);
+                    } catch (Throwable e) {
+                        done.completeExceptionally(e);
+                    }
+                }
+
+                // 与 try-with-resources 一致：close() 的异常作为被抑制的异常附加到主异常上
+                private void fail(Throwable e) {
+                    try {
+                        sink.close();
+                    } catch (Throwable closeFailure) {
+                        e.addSuppressed(closeFailure);
+                    }
+                    done.completeExceptionally(e);
+                }
+            });
+            start.run();
+            return new Execution(done, append(metrics, m));
+        }
+
+        private void consume() {
+            if (!consumed.compareAndSet(false, true)) {
+                throw new IllegalStateException("该 Pipeline 已经派生过阶段或连接过汇阶段，不能重复使用");
+            }
+        }
+
+        private StageMetrics lastStage() {
+            return metrics.get(metrics.size() - 1);
+        }
+
+        private static List<StageMetrics> append(List<StageMetrics> list, StageMetrics m) {
+            List<StageMetrics> copy = new ArrayList<>(list);
+            copy.add(m);
+            return Collections.unmodifiableList(copy);
+        }
+    }
+
+    /**
+     * 一次运行：完成信号 + 各阶段指标
+     */
+    static final class Execution {
+        private final CompletableFuture<Void> done;
+        private final List<StageMetrics> metrics;
+
+        Execution(CompletableFuture<Void> done, List<StageMetrics> metrics) {
+            this.done = done;
+            this.metrics = metrics;
+        }
+
+        CompletableFuture<Void> done() { return done; }
+
+        List<StageMetrics> metrics() { return metrics; }
+
+        void await() throws IOException {
+            try {
+                done.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                throw e;
+            }
+        }
+    }
+
+    // ==================== processFiles 的管道版本 ====================
+
+    static Source<String> lines(Path path) {
+        return emitter -> {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    emitter.accept(line);
+                }
+            }
+        };
+    }
+
+    static Sink<String> lineWriter(Path path) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        return new Sink<>() {
+            @Override
+            public void accept(String line) throws IOException {
+                writer.write(line);
+                writer.newLine();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    // 与原来的 processFiles 行为一致：逐行转大写，空行原样保留
+    static Execution processFiles(Path input, Path output, Executor executor) throws IOException {
+        return Pipeline.from("读取", lines(input), executor, 256)
+                .map("转大写", String::toUpperCase)
+                .to("写入", lineWriter(output));
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Flow 流式处理管道 ===\n");
+
+        Path dir = Files.createTempDirectory("item9-pipeline");
+        Path input = dir.resolve("animals.txt");
+        Path output = dir.resolve("ANIMALS.txt");
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            lines.add(i % 10 == 0 ? "" : "dog-" + i + " eats meat");
+        }
+        Files.write(input, lines, StandardCharsets.UTF_8);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            System.out.println("示例1：processFiles 的管道版本");
+            Execution run = processFiles(input, output, executor);
+            run.await();
+            run.metrics().forEach(m -> System.out.println("  " + m));
+            System.out.println("  输出行数: " + Files.readAllLines(output).size());
+
+            System.out.println("\n示例2：加一个过滤阶段，慢速汇阶段，观察背压");
+            int bufferSize = 64;
+            Execution slow = Pipeline.from("读取", lines(input), executor, bufferSize)
+                    .map("转大写", String::toUpperCase)
+                    .filter("去空行", line -> !line.isBlank())
+                    .to("慢速写入", new Sink<String>() {
+                        private long count;
+
+                        @Override
+                        public void accept(String item) throws InterruptedException {
+                            if (++count % 1000 == 0) Thread.sleep(1);   // 模拟慢速磁盘
+                        }
+
+                        @Override
+                        public void close() {
+                            System.out.println("  🔒 汇阶段已关闭，共写入 " + count + " 条");
+                        }
+                    });
+            slow.await();
+            slow.metrics().forEach(m -> System.out.println("  " + m));
+            System.out.println("  ✅ 最大队列深度受缓冲区大小 " + bufferSize + " 限制，内存有上界");
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+            Files.delete(dir);
+        }
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. 阶段之间用有界缓冲区连接，下游慢时上游自动阻塞");
+        System.out.println("2. 转换、过滤阶段可以自由组合");
+        System.out.println("3. 汇阶段无论成功失败都会关闭，close() 的异常被抑制而不是丢失");
+    }
+}
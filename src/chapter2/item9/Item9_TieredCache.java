@@ -0,0 +1,331 @@
+package chapter2.item9;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 演示 Effective Java 第9条：真正持久化的两级缓存管理器
+ *
+ * Item9_RealWorld.CacheManager 只是一个桩：put() 什么也不做，close() 只打印"持久化"。
+ * 本示例在同样的 put / get / close 接口背后实现：
+ * 1. L1：堆内 LRU，热点数据直接命中
+ * 2. L2：内存映射的段文件（segment-000.dat ...），追加写入
+ * 3. 写后持久化（write-behind）：put() 只写 L1 和脏表，后台线程定期批量刷到 L2，
+ *    close() 负责把剩余脏数据刷完并 force() 到磁盘
+ * 4. 快速预热：启动时直接映射已有段文件，只扫描键建立索引，值在首次读取时才解码
+ * 5. 统计 L1 / L2 命中率和刷盘延迟
+ *
+ * 注意：为了保持示例自包含，值限定为 String；段文件只追加不压缩，
+ * 覆盖写入会留下旧记录；映射在 JDK 17 中无法显式解除，由 GC 回收。
+ *
+ * 段文件格式：[int 已用长度][记录...]，记录为 [int 键长][int 值长][键][值]
+ *
+ * @author CN-JeffreyZhou
+ */
+public class Item9_TieredCache {
+
+    static final class TieredCacheManager implements AutoCloseable {
+        static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+        private static final int HEADER_SIZE = Integer.BYTES;
+        private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+
+        private final String cacheName;
+        private final Path dir;
+        private final Map<String, String> l1;
+        private final Map<String, String> dirty = new LinkedHashMap<>();   // 待刷盘，按键合并
+        private final Map<String, long[]> index = new HashMap<>();   // 键 -> {段号, 偏移}
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+        private final ScheduledExecutorService flusher;
+
+        private final LongAdder l1Hits = new LongAdder();
+        private final LongAdder l2Hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private long flushCount;
+        private long totalFlushNanos;
+        private long maxFlushNanos;
+        private long warmStartNanos;
+        private volatile boolean isOpen = true;
+
+        TieredCacheManager(String cacheName, Path dir, int l1Capacity, long flushIntervalMillis)
+                throws IOException {
+            this.cacheName = cacheName;
+            this.dir = Files.createDirectories(dir);
+            // accessOrder = true 的 LinkedHashMap 就是一个 LRU
+            this.l1 = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > l1Capacity;
+                }
+            };
+            warmStart();
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, cacheName + "-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly,
+                    flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+            System.out.println("📂 初始化缓存: " + cacheName + "（预热 " + index.size() + " 个键）");
+        }
+
+        public void put(String key, String value) {
+            // 在这里拒绝，而不是等到后台刷盘时才失败
+            if (recordSize(key, value) > SEGMENT_SIZE - HEADER_SIZE) {
+                throw new IllegalArgumentException("记录过大: " + key);
+            }
+            // 检查和写入在同一把锁内：close() 持锁清除 isOpen 之后，不会再有写入落在最后一次刷盘之后
+            synchronized (this) {
+                if (!isOpen) throw new IllegalStateException("缓存已关闭");
+                l1.put(key, value);
+                dirty.put(key, value);
+            }
+        }
+
+        public String get(String key) {
+            synchronized (this) {
+                if (!isOpen) throw new IllegalStateException("缓存已关闭");
+                String value = l1.get(key);
+                if (value != null) {
+                    l1Hits.increment();
+                    return value;
+                }
+                value = dirty.get(key);   // 可能已被 L1 淘汰但还没刷盘
+                if (value == null) value = readL2(key);
+                if (value == null) {
+                    misses.increment();
+                    return null;
+                }
+                l2Hits.increment();
+                l1.put(key, value);   // 提升到 L1
+                return value;
+            }
+        }
+
+        // ==================== L2：内存映射段文件 ====================
+
+        /**
+         * 预热：映射已有段文件，只读取键建立索引，不解码值
+         */
+        private void warmStart() throws IOException {
+            long start = System.nanoTime();
+            List<Path> files;
+            try (Stream<Path> s = Files.list(dir)) {
+                // 按段号排序而不是按文件名：超过 999 个段后 "segment-1000" 的字典序排在 "segment-101" 前面
+                files = s.filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches())
+                        .sorted(Comparator.comparingInt(TieredCacheManager::segmentNumber))
+                        .collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                int segmentId = segments.size();
+                if (segmentNumber(file) != segmentId) {   // 段号就是 index 中的编号，缺号会让位置错乱
+                    throw new IOException("段文件不连续，缺少 segment-" + segmentId + ": " + dir);
+                }
+                MappedByteBuffer seg = map(file);
+                segments.add(seg);
+                int used = seg.getInt(0);
+                if (used < HEADER_SIZE) {   // 创建后尚未写入头部的段
+                    seg.putInt(0, HEADER_SIZE);
+                    used = HEADER_SIZE;
+                }
+                int pos = HEADER_SIZE;
+                while (pos < used) {
+                    int keyLen = seg.getInt(pos);
+                    int valueLen = seg.getInt(pos + Integer.BYTES);
+                    String key = decode(seg, pos + 2 * Integer.BYTES, keyLen);
+                    index.put(key, new long[]{segmentId, pos});   // 后写入的记录覆盖先写入的
+                    pos += 2 * Integer.BYTES + keyLen + valueLen;
+                }
+            }
+            warmStartNanos = System.nanoTime() - start;
+        }
+
+        private static int segmentNumber(Path file) {
+            Matcher m = SEGMENT_NAME.matcher(file.getFileName().toString());
+            if (!m.matches()) throw new IllegalArgumentException("不是段文件: " + file);
+            return Integer.parseInt(m.group(1));
+        }
+
+        private MappedByteBuffer map(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, CREATE, READ, WRITE)) {
+                // 映射建立后即可关闭通道，映射依然有效
+                return ch.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            }
+        }
+
+        private MappedByteBuffer newSegment() throws IOException {
+            Path file = dir.resolve(String.format("segment-%03d.dat", segments.size()));
+            MappedByteBuffer seg = map(file);
+            seg.putInt(0, HEADER_SIZE);
+            segments.add(seg);
+            return seg;
+        }
+
+        private String readL2(String key) {
+            long[] loc = index.get(key);
+            if (loc == null) return null;
+            MappedByteBuffer seg = segments.get((int) loc[0]);
+            int pos = (int) loc[1];
+            int keyLen = seg.getInt(pos);
+            int valueLen = seg.getInt(pos + Integer.BYTES);
+            return decode(seg, pos + 2 * Integer.BYTES + keyLen, valueLen);
+        }
+
+        private static long recordSize(String key, String value) {
+            // UTF-8 每个 char 最多 3 字节，先用上界快速放行，接近上限时再精确计算
+            long bound = 2L * Integer.BYTES + 3L * (key.length() + value.length());
+            if (bound <= SEGMENT_SIZE - HEADER_SIZE) return bound;
+            return 2L * Integer.BYTES + key.getBytes(StandardCharsets.UTF_8).length
+                    + value.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        private void appendL2(String key, String value) throws IOException {
+            byte[] k = key.getBytes(StandardCharsets.UTF_8);
+            byte[] v = value.getBytes(StandardCharsets.UTF_8);
+            int recordSize = 2 * Integer.BYTES + k.length + v.length;   // put() 已保证不超过一个段
+            MappedByteBuffer seg = segments.isEmpty() ? newSegment() : segments.get(segments.size() - 1);
+            int used = seg.getInt(0);
+            if (used + recordSize > SEGMENT_SIZE) {
+                seg = newSegment();
+                used = HEADER_SIZE;
+            }
+            seg.putInt(used, k.length);
+            seg.putInt(used + Integer.BYTES, v.length);
+            seg.put(used + 2 * Integer.BYTES, k);
+            seg.put(used + 2 * Integer.BYTES + k.length, v);
+            seg.putInt(0, used + recordSize);   // 记录写完后再更新已用长度
+            index.put(key, new long[]{segments.size() - 1, used});
+        }
+
+        private static String decode(MappedByteBuffer seg, int pos, int len) {
+            byte[] bytes = new byte[len];
+            seg.get(pos, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // ==================== 写后持久化 ====================
+
+        /**
+         * 把脏数据批量追加到 L2，返回刷出的条数。
+         * 每条追加成功后立即移出脏表，中途失败时重试不会重复追加已写入的记录。
+         */
+        synchronized int flush() throws IOException {
+            if (dirty.isEmpty()) return 0;
+            long start = System.nanoTime();
+            int n = 0;
+            for (Iterator<Map.Entry<String, String>> it = dirty.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, String> e = it.next();
+                appendL2(e.getKey(), e.getValue());
+                it.remove();
+                n++;
+            }
+            long elapsed = System.nanoTime() - start;
+            flushCount++;
+            totalFlushNanos += elapsed;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            return n;
+        }
+
+        private void flushQuietly() {
+            try {
+                flush();
+            } catch (IOException | RuntimeException e) {
+                // 异常逃出去会让定时任务永久停止，写后持久化就悄悄失效了
+                System.err.println("后台刷盘失败，将在下次刷盘时重试: " + e);
+            }
+        }
+
+        /**
+         * 关闭：停止后台线程 -> 刷完脏数据 -> force() 到磁盘
+         */
+        @Override
+        public void close() throws IOException {
+            synchronized (this) {
+                if (!isOpen) return;
+                isOpen = false;
+            }
+            flusher.shutdown();   // 等待后台线程时不能持锁，否则它的 flush() 会一直等这把锁
+            try {
+                flusher.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                int n = flush();
+                for (MappedByteBuffer seg : segments) {
+                    seg.force();
+                }
+                System.out.println("💾 持久化缓存: " + cacheName + "（关闭时刷出 " + n + " 条）");
+            }
+            System.out.println("🔒 关闭缓存: " + cacheName);
+        }
+
+        synchronized String stats() {
+            long l1 = l1Hits.sum(), l2 = l2Hits.sum(), miss = misses.sum();
+            long total = Math.max(1, l1 + l2 + miss);
+            return String.format("L1 命中率 %.1f%%，L2 命中率 %.1f%%，未命中 %.1f%%；"
+                            + "刷盘 %d 次，平均 %.2f ms，最大 %.2f ms；预热 %.2f ms",
+                    100.0 * l1 / total, 100.0 * l2 / total, 100.0 * miss / total,
+                    flushCount, flushCount == 0 ? 0 : totalFlushNanos / 1e6 / flushCount,
+                    maxFlushNanos / 1e6, warmStartNanos / 1e6);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== 两级持久化缓存 ===\n");
+
+        Path dir = Files.createTempDirectory("item9-cache");
+        int keys = 100_000;
+
+        System.out.println("第一次运行：写入数据");
+        try (TieredCacheManager cache = new TieredCacheManager("user-cache", dir, 10_000, 100)) {
+            for (int i = 0; i < keys; i++) {
+                cache.put("user:" + i, "动物饲养员-" + i);
+            }
+            Thread.sleep(300);   // 让后台线程刷一部分
+            for (int i = 0; i < keys; i += 7) {
+                cache.get("user:" + i);
+            }
+            System.out.println("  " + cache.stats());
+        }
+
+        System.out.println("\n第二次运行：映射段文件预热");
+        try (TieredCacheManager cache = new TieredCacheManager("user-cache", dir, 10_000, 100)) {
+            Random random = new Random(42);
+            for (int i = 0; i < 200_000; i++) {
+                // 80% 的访问集中在 5% 的热点键上
+                int id = random.nextInt(10) < 8 ? random.nextInt(keys / 20) : random.nextInt(keys);
+                cache.get("user:" + id);
+            }
+            cache.get("user:不存在");
+            System.out.println("  user:42 -> " + cache.get("user:42"));
+            System.out.println("  " + cache.stats());
+        }
+
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+
+        System.out.println("\n💡 要点：");
+        System.out.println("1. put() 只写内存，后台线程批量刷盘，close() 保证剩余数据落盘");
+        System.out.println("2. 重启时映射段文件，只扫描键，值按需解码");
+        System.out.println("3. 和桩实现一样通过 try-with-resources 使用，但 close() 真的在持久化");
+    }
+}
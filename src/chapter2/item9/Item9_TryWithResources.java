@@ -25,6 +25,7 @@ public class Item9_TryWithResources {
     /**
      * 优势2：多个资源 - 代码依然清晰
      * 不需要嵌套，资源会按相反顺序自动关闭
+     * （大文件的高性能拷贝见 Item9_FastCopy）
      */
     static void copy(String src, String dst) throws IOException {
         try (InputStream in = new FileInputStream(src);